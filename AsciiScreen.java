@@ -1,4 +1,12 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 
 /***
  * Class representing a screen
@@ -8,12 +16,23 @@ import java.util.ArrayList;
  */
 public class AsciiScreen
 {
+    //size of the blocks written to a
+    //channel by flushTo
+    private static final int CHANNEL_BLOCK = 8192;
+
+    //sent for characters outside ascii,
+    //as by the US-ASCII charset
+    private static final byte UNMAPPABLE = '?';
+
     /***
      * Property: Width
      * The width of the screen measured
-     * in characters.  All Strings in
-     * the screen ArrayList will have a
-     * length equal to the width.
+     * in characters.  Every row of the
+     * frame buffer has a length equal
+     * to the width.  A new width takes
+     * effect on the next initScreen,
+     * until then writes are clipped to
+     * the rows as they are.
      */
     private int width;
     public int getWidth(){
@@ -27,8 +46,9 @@ public class AsciiScreen
      * Property: Height
      * The height of the screen measured
      * in characters (or lines).  The
-     * screen ArrayList has a size equal
-     * to the height.
+     * frame buffer has one row per line.
+     * A new height takes effect on the
+     * next initScreen.
      */
     private int height;
     public int getHeight(){
@@ -52,13 +72,59 @@ public class AsciiScreen
         this.background = value;
     }
 
+    /***
+     * The frame buffer, one character
+     * array per screen line.  The rows
+     * are reused between frames and are
+     * only reallocated when the screen
+     * size changes.
+     */
+    private char[][] rows = new char[0][];
+
+    /***
+     * Property: RenderTag
+     * Record left by the last renderer
+     * to draw the whole screen, telling
+     * it what the frame holds so it can
+     * be updated incrementally.  Every
+     * change to the screen clears it, so
+     * a renderer sets it after the last
+     * change it makes to a frame, and a
+     * tag read back means the screen
+     * still holds that frame.
+     */
+    private Object renderTag;
+    Object getRenderTag(){
+        return renderTag;
+    }
+    void setRenderTag(Object value){
+        renderTag = value;
+    }
+
+    /***
+     * Cached legacy view of the frame
+     * buffer, built on demand and
+     * discarded whenever a row changes.
+     */
+    private ArrayList<String> screen;
+
     /***
      * Property: Screen
      * The array list of String objects
-     * which make up the screen.
+     * which make up the screen.  The
+     * list is built lazily from the
+     * frame buffer and is a read only
+     * snapshot; changes made to it are
+     * not written back to the screen.
      */
-    private ArrayList<String> screen;
     public ArrayList<String> getScreen(){
+        if(screen == null){
+            screen = new ArrayList<>(rows.length);
+            for(int i = 0; i < rows.length; i++){
+                screen.add(new String(rows[i]));
+            }//end for i
+        }//end if
+
         return screen;
     }
 
@@ -66,7 +132,6 @@ public class AsciiScreen
      * Constructor.
      */
     public AsciiScreen(){
-        screen = new ArrayList<>();
     }
 
     /***
@@ -75,7 +140,6 @@ public class AsciiScreen
      *           character.
      */
     public AsciiScreen(char bg){
-        screen = new ArrayList<>();
         background = bg;
     }
 
@@ -85,7 +149,6 @@ public class AsciiScreen
      * @param h The height of the screen.
      */
     public AsciiScreen(int w, int h){
-        screen = new ArrayList<>();
         width = w;
         height = h;
         initScreen();
@@ -99,7 +162,6 @@ public class AsciiScreen
      *           character.
      */
     public AsciiScreen(int w, int h, char bg){
-        screen = new ArrayList<>();
         width = w;
         height = h;
         background = bg;
@@ -128,12 +190,199 @@ public class AsciiScreen
      * background character.
      */
     public void initScreen(){
-        screen.clear();
-        String s = blankLine();
+        //only reallocate the frame
+        //buffer if the size changed
+        if(rows.length != height ||
+           (height > 0 && rows[0].length != width)){
+            rows = new char[height][width];
+        }//end if
+
+        for(int i = 0; i < rows.length; i++){
+            Arrays.fill(rows[i], background);
+        }//end for i
 
-        for(int i = 0; i < height; i++){
-            screen.add(s);
+        changed();
+    }
+
+    /***
+     * Fills a region of the screen with
+     * the background character.  The
+     * region is clipped to the screen.
+     * @param col First column of the region.
+     * @param row First line of the region.
+     * @param w Width of the region.
+     * @param h Height of the region.
+     */
+    public void clearRegion(int col, int row, int w, int h){
+        int colFrom = Math.max(col, 0);
+        int rowTo = Math.min(row + h, rows.length);
+
+        for(int i = Math.max(row, 0); i < rowTo; i++){
+            int colTo = Math.min(col + w, rows[i].length);
+            if(colFrom < colTo)
+                Arrays.fill(rows[i], colFrom, colTo, background);
         }//end for i
+
+        changed();
+    }
+
+    /***
+     * Scrolls the contents of the screen.
+     * Lines are moved by swapping the rows
+     * rather than copying them, and the
+     * area uncovered by the scroll is
+     * filled with the background character.
+     * @param dx Number of columns to move
+     *           the contents right by,
+     *           negative to move left.
+     * @param dy Number of lines to move
+     *           the contents down by,
+     *           negative to move up.
+     */
+    public void scroll(int dx, int dy){
+        //the rows keep their length until
+        //the next initScreen
+        int h = rows.length;
+        int w = (h == 0) ? 0 : rows[0].length;
+
+        if(dy != 0){
+            if(Math.abs(dy) >= h){
+                clearRegion(0, 0, w, h);
+            }//end if
+            else{
+                Collections.rotate(Arrays.asList(rows), dy);
+                if(dy > 0)
+                    clearRegion(0, 0, w, dy);
+                else
+                    clearRegion(0, h + dy, w, -dy);
+            }//end else
+        }//end if
+
+        if(dx != 0){
+            if(Math.abs(dx) >= w){
+                clearRegion(0, 0, w, h);
+            }//end if
+            else{
+                int len = w - Math.abs(dx);
+                for(int i = 0; i < h; i++){
+                    System.arraycopy(rows[i], Math.max(0, -dx), rows[i], Math.max(0, dx), len);
+                }//end for i
+                if(dx > 0)
+                    clearRegion(0, 0, dx, h);
+                else
+                    clearRegion(w + dx, 0, -dx, h);
+            }//end else
+        }//end if
+
+        changed();
+    }
+
+    /***
+     * Retrieves the frame buffer row
+     * for the specified line.  The
+     * array returned is the live row,
+     * callers writing into it directly
+     * must call touch afterwards so the
+     * legacy String view is rebuilt.
+     * @param index Line number of the row.
+     * @return Returns the row, or null
+     *         if the index is invalid.
+     */
+    public char[] row(int index){
+        if(index < 0 || index >= rows.length){
+            return null;
+        }//end if
+        else{
+            return rows[index];
+        }//end else
+    }
+
+    /***
+     * Marks the screen contents as
+     * changed after a direct write
+     * into a row.
+     */
+    public void touch(){
+        changed();
+    }
+
+    /***
+     * Discards what was derived from the
+     * screen contents after a change: the
+     * legacy String view and the render tag.
+     */
+    private void changed(){
+        screen = null;
+        renderTag = null;
+    }
+
+    /***
+     * Copies a run of characters into
+     * the frame buffer.  The run is
+     * clipped to the bounds of the
+     * screen.
+     * @param row Line number to write to.
+     * @param col Column of the screen to
+     *            write the first character
+     *            of the run to.
+     * @param src Source characters.
+     * @param from Index of the first
+     *             source character to copy.
+     * @param to Index after the last
+     *           source character to copy.
+     * @return Returns the number of
+     *         characters copied.
+     */
+    public int blit(int row, int col, char[] src, int from, int to){
+        if(row < 0 || row >= rows.length)
+            return 0;
+
+        //clip the run to the screen
+        if(col < 0){
+            from -= col;
+            col = 0;
+        }//end if
+        to = Math.min(to, from + (rows[row].length - col));
+
+        if(to > from){
+            System.arraycopy(src, from, rows[row], col, to - from);
+            changed();
+            return to - from;
+        }//end if
+
+        return 0;
+    }
+
+    /***
+     * Copies a run of characters from
+     * a String into the frame buffer.
+     * The run is clipped to the bounds
+     * of the screen.
+     * @param row Line number to write to.
+     * @param col Column of the screen to
+     *            write the first character
+     *            of the run to.
+     * @param src Source String.
+     * @param from Index of the first
+     *             source character to copy.
+     * @param to Index after the last
+     *           source character to copy.
+     */
+    public void blit(int row, int col, String src, int from, int to){
+        if(row < 0 || row >= rows.length)
+            return;
+
+        //clip the run to the screen
+        if(col < 0){
+            from -= col;
+            col = 0;
+        }//end if
+        to = Math.min(to, from + (rows[row].length - col));
+
+        if(to > from){
+            src.getChars(from, to, rows[row], col);
+            changed();
+        }//end if
     }
 
     /***
@@ -145,15 +394,168 @@ public class AsciiScreen
      *         String object.
      */
     public String flush(){
-        StringBuilder sb = new StringBuilder();
+        StringBuilder sb = new StringBuilder(rows.length * (width + 1));
 
-        for( int i = 0; i < screen.size(); i++){
-            if(i == screen.size() - 1)
-                sb.append(screen.get(i));
-            else
-                sb.append(screen.get(i) + '\n');
+        for(int i = 0; i < rows.length; i++){
+            if(i > 0)
+                sb.append('\n');
+            sb.append(rows[i]);
         }//end for i
 
         return sb.toString();
     }
+
+    /***
+     * Calculates the length of the
+     * contents of the screen as given by
+     * flush, in characters or in US-ASCII
+     * bytes.  The rows are measured, as a
+     * new width only takes effect at the
+     * next initScreen.
+     * @return Returns the length.
+     */
+    public int flushLength(){
+        return (rows.length == 0) ? 0 : rows.length * (rows[0].length + 1) - 1;
+    }
+
+    /***
+     * Writes the contents of the screen,
+     * as given by flush, to an Appendable.
+     * The rows are passed as they are,
+     * without making a String of them.
+     * @param out The Appendable to write to.
+     * @throws IOException
+     */
+    public void flushTo(Appendable out)
+            throws IOException{
+        for(int i = 0; i < rows.length; i++){
+            if(i > 0)
+                out.append('\n');
+
+            if(out instanceof Writer)
+                ((Writer) out).write(rows[i]);
+            else if(out instanceof StringBuilder)
+                ((StringBuilder) out).append(rows[i]);
+            else
+                out.append(CharBuffer.wrap(rows[i]));
+        }//end for i
+    }
+
+    /***
+     * Encodes the contents of the screen,
+     * as given by flush, to US-ASCII bytes
+     * in a buffer.  Characters outside of
+     * ascii are encoded as '?'.
+     * @param buf The buffer to write to,
+     *            from its position, with
+     *            at least flushLength
+     *            bytes remaining.
+     * @return Returns the number of bytes
+     *         written.
+     * @throws BufferOverflowException
+     *         if the buffer is too small,
+     *         nothing is written.
+     */
+    public int flushTo(ByteBuffer buf){
+        int length = flushLength();
+        if(buf.remaining() < length)
+            throw new BufferOverflowException();
+
+        for(int i = 0; i < rows.length; i++){
+            if(i > 0)
+                buf.put((byte) '\n');
+            encode(rows[i], 0, rows[i].length, buf);
+        }//end for i
+
+        return length;
+    }
+
+    /***
+     * Writes the contents of the screen,
+     * as given by flush, to a channel as
+     * US-ASCII bytes.  The rows are
+     * encoded a block at a time, so the
+     * screen is never copied whole.
+     * Characters outside of ascii are
+     * encoded as '?'.
+     * @param channel The channel to write to.
+     * @return Returns the number of bytes
+     *         written.
+     * @throws IOException
+     */
+    public long flushTo(WritableByteChannel channel)
+            throws IOException{
+        int length = flushLength();
+        ByteBuffer buf = ByteBuffer.allocate(Math.max(1, Math.min(length, CHANNEL_BLOCK)));
+
+        for(int i = 0; i < rows.length; i++){
+            if(i > 0){
+                if(!buf.hasRemaining())
+                    drain(buf, channel);
+                buf.put((byte) '\n');
+            }//end if
+
+            //rows longer than the block are
+            //encoded a block at a time
+            char[] row = rows[i];
+            int from = 0;
+            while(from < row.length){
+                if(!buf.hasRemaining())
+                    drain(buf, channel);
+
+                int to = Math.min(row.length, from + buf.remaining());
+                encode(row, from, to, buf);
+                from = to;
+            }//end while
+        }//end for i
+        drain(buf, channel);
+
+        return length;
+    }
+
+    /***
+     * Encodes a run of characters to
+     * US-ASCII bytes in a buffer.
+     * @param src The characters.
+     * @param from Index of the first
+     *             character to encode.
+     * @param to Index after the last
+     *           character to encode.
+     * @param buf The buffer to write to.
+     */
+    private static void encode(char[] src, int from, int to, ByteBuffer buf){
+        if(buf.hasArray()){
+            //write straight into the array
+            //backing the buffer
+            byte[] dst = buf.array();
+            int d = buf.arrayOffset() + buf.position();
+            for(int i = from; i < to; i++){
+                char c = src[i];
+                dst[d++] = (c < 0x80) ? (byte) c : UNMAPPABLE;
+            }//end for i
+            buf.position(buf.position() + (to - from));
+        }//end if
+        else{
+            for(int i = from; i < to; i++){
+                char c = src[i];
+                buf.put((c < 0x80) ? (byte) c : UNMAPPABLE);
+            }//end for i
+        }//end else
+    }
+
+    /***
+     * Writes the bytes held in a buffer to
+     * a channel and empties the buffer.
+     * @param buf The buffer.
+     * @param channel The channel.
+     * @throws IOException
+     */
+    private static void drain(ByteBuffer buf, WritableByteChannel channel)
+            throws IOException{
+        buf.flip();
+        while(buf.hasRemaining()){
+            channel.write(buf);
+        }//end while
+        buf.clear();
+    }
 }
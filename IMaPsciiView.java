@@ -0,0 +1,23 @@
+import java.awt.*;
+import java.util.function.Consumer;
+
+/***
+ * Interface for a control which views
+ * a map.  The map is rendered and
+ * changed on a render thread; requests
+ * may be made from any thread.
+ */
+public interface IMaPsciiView
+{
+    public AsciiScreen getScreen();
+    public MaPsciiMap getMap();
+    public void setMap(MaPsciiMap value);
+    public Consumer<Point> getBeforeRender();
+    public void setBeforeRender(Consumer<Point> value);
+
+    public void resize();
+    public void render();
+    public void render(Runnable change);
+    public void execute(Runnable task);
+    public void pan(int x, int y);
+}
@@ -0,0 +1,345 @@
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.function.Supplier;
+
+/***
+ * Micro benchmarks for the hot paths:
+ * map rendering across grid, scale and
+ * screen sizes, tile line rendering,
+ * screen flush and init, grid growth and
+ * database loads.  Each benchmark is run
+ * for a number of timed warm up and
+ * measurement iterations, and the
+ * throughput and the bytes allocated
+ * per operation are printed.
+ * Usage: MaPsciiBench [-quick] [filter]
+ * where filter picks the benchmarks whose
+ * name contains it.
+ */
+public class MaPsciiBench
+{
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURE_ITERATIONS = 5;
+
+    private static final int[] GRID_SIZES = {100, 1000};
+    private static final int[] SCALES = {1, 2, 4};
+    private static final int[][] SCREENS = {{80, 24}, {200, 60}, {400, 120}};
+    private static final int[] DB_SIZES = {100, 300};
+
+    private static final String DB_GUID = "{B0E5C6A1-0D3F-4C5E-9A7B-5E1D2C3B4A59}";
+
+    //length of one iteration in milliseconds
+    private static int iterationMs = 1000;
+    private static String filter = "";
+
+    /***
+     * Results are written here so the
+     * work is not optimized away.
+     */
+    private static volatile Object sink;
+
+    /***
+     * An operation to measure.
+     */
+    private interface Op
+    {
+        Object run() throws Exception;
+    }
+
+    public static void main(String[] args){
+        for(String arg : args){
+            if(arg.equals("-quick"))
+                iterationMs = 200;
+            else
+                filter = arg;
+        }//end for arg
+
+        System.out.println(String.format("%1$-44s %2$14s %3$10s %4$12s",
+                                         "benchmark", "ops/s", "error %", "bytes/op"));
+        try{
+            renderBenchmarks();
+            tileBenchmarks();
+            screenBenchmarks();
+            growthBenchmarks();
+            databaseBenchmarks();
+        }//end try
+        catch(Exception e){
+            System.out.println(e.getMessage());
+        }//end catch e
+    }
+
+    /***
+     * MaPsciiMap.renderMap across grid
+     * sizes, scales and screen sizes.
+     */
+    private static void renderBenchmarks()
+            throws Exception{
+        for(int size : GRID_SIZES){
+            MaPsciiMap map = new MaPsciiMap();
+            map.setGrid(buildGrid(new MaPsciiChunkedGrid(), size));
+            map.setMapCenter(new Point(size / 2, size / 2));
+
+            for(int scale : SCALES){
+                for(int[] s : SCREENS){
+                    map.setScale(scale);
+                    AsciiScreen screen = new AsciiScreen(s[0], s[1]);
+                    bench(String.format("renderMap %1$dx%1$d s%2$d %3$dx%4$d", size, scale, s[0], s[1]),
+                          () -> {
+                              map.renderMap(screen);
+                              return screen;
+                          });
+                }//end for s
+            }//end for scale
+        }//end for size
+    }
+
+    /***
+     * MaPsciiSquare.renderLine for every
+     * line of a tile, with and without the
+     * glyph cache.
+     */
+    private static void tileBenchmarks()
+            throws Exception{
+        MaPsciiSquare square = new MaPsciiSquare(0, 0);
+        for(int scale : SCALES){
+            int h = square.calcHeight(scale);
+            bench("renderLine s" + scale, () -> {
+                String last = null;
+                for(int i = 0; i < h; i++){
+                    last = square.renderLine(scale, i, square.getRenderPass());
+                }//end for i
+                return last;
+            });
+            bench("glyphLine s" + scale, () -> {
+                char[] last = null;
+                for(int i = 0; i < h; i++){
+                    last = square.glyphLine(scale, i, square.getRenderPass());
+                }//end for i
+                return last;
+            });
+        }//end for scale
+    }
+
+    /***
+     * AsciiScreen.flush, flushTo and
+     * initScreen.
+     */
+    private static void screenBenchmarks()
+            throws Exception{
+        for(int[] s : SCREENS){
+            AsciiScreen screen = new AsciiScreen(s[0], s[1]);
+            bench("flush " + s[0] + "x" + s[1], screen::flush);
+
+            ByteBuffer buf = ByteBuffer.allocate(screen.flushLength());
+            bench("flushTo buffer " + s[0] + "x" + s[1], () -> {
+                buf.clear();
+                screen.flushTo(buf);
+                return buf;
+            });
+
+            WritableByteChannel discard = Channels.newChannel(OutputStream.nullOutputStream());
+            bench("flushTo channel " + s[0] + "x" + s[1], () -> screen.flushTo(discard));
+            bench("initScreen " + s[0] + "x" + s[1], () -> {
+                screen.initScreen();
+                return screen;
+            });
+        }//end for s
+    }
+
+    /***
+     * MaPsciiMap.addTiles growing an empty
+     * grid one row or column at a time.
+     */
+    private static void growthBenchmarks()
+            throws Exception{
+        ArrayList<Supplier<MaPsciiGrid>> kinds = new ArrayList<>();
+        kinds.add(MaPsciiGrid::new);
+        kinds.add(MaPsciiDenseGrid::new);
+        kinds.add(MaPsciiChunkedGrid::new);
+        for(Supplier<MaPsciiGrid> kind : kinds){
+            String name = "addTiles 100x100 " + kind.get().getClass().getName();
+            bench(name, () -> {
+                MaPsciiGrid grid = kind.get();
+                MaPsciiMap map = new MaPsciiMap();
+                map.setGrid(grid);
+                for(int i = 0; i < 100; i++){
+                    map.addTiles(MaPsciiTile.Direction.BOTTOM, MaPsciiSquare.class);
+                    map.addTiles(MaPsciiTile.Direction.RIGHT, MaPsciiSquare.class);
+                }//end for i
+                return grid;
+            });
+        }//end for kind
+    }
+
+    /***
+     * MaPsciiDBM.loadMap against generated
+     * SQLite databases.
+     */
+    private static void databaseBenchmarks()
+            throws Exception{
+        for(int size : DB_SIZES){
+            String name = "loadMap db " + size + "x" + size;
+            if(!wanted(name))
+                continue;
+
+            File db = createDatabase(size);
+            MaPsciiDBM dbm = new MaPsciiDBM("jdbc:sqlite:" + db.getPath(), null);
+            dbm.connect();
+            bench(name, () -> {
+                MaPsciiChunkedGrid grid = new MaPsciiChunkedGrid();
+                grid.setGuid(DB_GUID);
+                dbm.loadMap(grid);
+                return grid;
+            });
+            dbm.disconnect();
+        }//end for size
+    }
+
+    /***
+     * Runs a benchmark and prints its
+     * results, if it passes the filter.
+     * @param name The benchmark name.
+     * @param op The operation measured.
+     */
+    private static void bench(String name, Op op)
+            throws Exception{
+        if(!wanted(name))
+            return;
+
+        for(int i = 0; i < WARMUP_ITERATIONS; i++){
+            iteration(op);
+        }//end for i
+
+        double[] rates = new double[MEASURE_ITERATIONS];
+        long ops = 0;
+        long bytes = 0;
+        for(int i = 0; i < MEASURE_ITERATIONS; i++){
+            long before = allocatedBytes();
+            long[] result = iteration(op);
+            bytes += allocatedBytes() - before;
+            ops += result[0];
+            rates[i] = result[0] * 1e9 / result[1];
+        }//end for i
+
+        double mean = 0;
+        for(double r : rates){
+            mean += r;
+        }//end for r
+        mean /= rates.length;
+
+        double var = 0;
+        for(double r : rates){
+            var += (r - mean) * (r - mean);
+        }//end for r
+        double error = Math.sqrt(var / (rates.length - 1)) / mean * 100;
+
+        System.out.println(String.format("%1$-44s %2$14.1f %3$10.1f %4$12d",
+                                         name, mean, error, bytes / Math.max(1, ops)));
+    }
+
+    /***
+     * Runs an operation repeatedly for one
+     * iteration.
+     * @param op The operation.
+     * @return Returns the number of runs
+     *         and the nanoseconds taken.
+     */
+    private static long[] iteration(Op op)
+            throws Exception{
+        long end = System.nanoTime() + iterationMs * 1000000L;
+        long start = System.nanoTime();
+        long count = 0;
+        long now;
+        do{
+            sink = op.run();
+            count++;
+            now = System.nanoTime();
+        }while(now < end);
+
+        return new long[]{count, now - start};
+    }
+
+    /***
+     * Retrieves the bytes allocated by the
+     * current thread so far.
+     * @return Returns the byte count, or
+     *         zero if the JVM does not
+     *         track it.
+     */
+    private static long allocatedBytes(){
+        java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        if(mx instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) mx).getThreadAllocatedBytes(Thread.currentThread().getId());
+        else
+            return 0;
+    }
+
+    /***
+     * Determines if a benchmark passes
+     * the filter.
+     * @param name The benchmark name.
+     * @return Returns True if it should run.
+     */
+    private static boolean wanted(String name){
+        return name.contains(filter);
+    }
+
+    /***
+     * Fills a grid with square tiles.
+     * @param grid The empty grid.
+     * @param size The number of rows
+     *             and columns.
+     * @return Returns the grid.
+     */
+    private static MaPsciiGrid buildGrid(MaPsciiGrid grid, int size)
+            throws MaPsciiContextException{
+        grid.addTiles(MaPsciiTile.Direction.BOTTOM, size, MaPsciiSquare.class);
+        grid.addTiles(MaPsciiTile.Direction.RIGHT, size - 1, MaPsciiSquare.class);
+        return grid;
+    }
+
+    /***
+     * Creates a SQLite database holding one
+     * generated map, saved through
+     * MaPsciiDBM.
+     * @param size The number of rows and
+     *             columns.
+     * @return Returns the database file,
+     *         deleted when the JVM exits.
+     */
+    private static File createDatabase(int size)
+            throws IOException, SQLException, MaPsciiContextException{
+        File db = File.createTempFile("mapscii-bench", ".db");
+        db.deleteOnExit();
+
+        try(Connection c = DriverManager.getConnection("jdbc:sqlite:" + db.getPath());
+            Statement st = c.createStatement()){
+            st.execute("CREATE TABLE MAP (GUID TEXT PRIMARY KEY, NAME TEXT, DESCRIPTION TEXT)");
+            st.execute("CREATE TABLE MAP_TILES (GUID TEXT, CLASS_NAME TEXT, MAP_ID TEXT, " +
+                       "TILE_X INTEGER, TILE_Y INTEGER, MAP_X INTEGER, MAP_Y INTEGER, RENDER_PASS TEXT)");
+            st.execute("CREATE UNIQUE INDEX IX_MAP_TILES ON MAP_TILES (MAP_ID, MAP_X, MAP_Y)");
+        }//end try
+
+        MaPsciiGrid grid = buildGrid(new MaPsciiDenseGrid(), size);
+        grid.setGuid(DB_GUID);
+        grid.setName("Benchmark");
+
+        MaPsciiDBM dbm = new MaPsciiDBM("jdbc:sqlite:" + db.getPath(), null);
+        dbm.connect();
+        dbm.saveMap(grid);
+        dbm.disconnect();
+
+        return db;
+    }
+}
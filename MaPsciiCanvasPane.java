@@ -0,0 +1,335 @@
+import javafx.application.Platform;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+
+import java.awt.*;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/***
+ * Control for viewing an ascii text
+ * map which draws the screen onto a
+ * canvas from a glyph atlas instead of
+ * laying it out as text.  Only the rows
+ * which changed since the last frame
+ * are drawn, and the screen is sized
+ * from the measured font metrics.
+ * Frames are built on a background
+ * render thread as in MaPsciiPane.
+ */
+public class MaPsciiCanvasPane extends Region implements IMaPsciiView
+{
+    private static final Color BACKGROUND = Color.WHITE;
+    private static final Color FOREGROUND = Color.BLACK;
+
+    /***
+     * Property: Screen.
+     * The scratch text area to render
+     * the map images to.  It belongs to
+     * the render thread.
+     */
+    private AsciiScreen screen;
+    public AsciiScreen getScreen(){
+        return screen;
+    }
+
+    /***
+     * Property: Map.
+     * The linked map object to
+     * render from.
+     */
+    private MaPsciiMap map;
+    public  MaPsciiMap getMap(){
+        return map;
+    }
+    public void setMap(MaPsciiMap value){
+        map = value;
+        pipeline.setMap(value);
+    }
+
+    /***
+     * Property: BeforeRender
+     * Called on the render thread before
+     * each frame with the map center about
+     * to be rendered.  May be null.
+     */
+    public Consumer<Point> getBeforeRender(){
+        return pipeline.getBeforeRender();
+    }
+    public void setBeforeRender(Consumer<Point> value){
+        pipeline.setBeforeRender(value);
+    }
+
+    /***
+     * Property: Font
+     * The monospace font to draw with.
+     * Setting it redraws the whole map.
+     */
+    public Font getFont(){
+        return atlas.getFont();
+    }
+    public void setFont(Font value){
+        atlas = new MaPsciiGlyphAtlas(value, FOREGROUND);
+        resize();
+    }
+
+    /***
+     * Property: BackgroundChar.
+     * The character used to fill in
+     * empty areas of the map.
+     */
+    private char backgroundChar;
+    public char getBackgroundChar(){
+        return backgroundChar;
+    }
+    public void setBackgroundChar(char value){
+        backgroundChar = value;
+    }
+
+    private Canvas canvas;
+    private MaPsciiGlyphAtlas atlas;
+    private MaPsciiRenderPipeline pipeline;
+    private MaPsciiFrameScheduler scheduler;
+
+    /***
+     * The rows of the last frame handed
+     * to the JavaFX thread, used only on
+     * the render thread to find the rows
+     * which changed.
+     */
+    private char[][] sent = new char[0][];
+
+    /***
+     * Rows waiting to be drawn, null for
+     * rows which have not changed, guarded
+     * by frameLock.  Frames which arrive
+     * before the rows are drawn are merged.
+     */
+    private final Object frameLock = new Object();
+    private char[][] pending;
+    private boolean drawScheduled;
+
+    /***
+     * The rows on the canvas, used only on
+     * the JavaFX thread to redraw it.
+     */
+    private char[][] shown = new char[0][];
+
+    /***
+     * Initializes the object during
+     * construction.
+     */
+    private void constructorInit(){
+        atlas = new MaPsciiGlyphAtlas(new Font("Courier New", 20), FOREGROUND);
+
+        canvas = new Canvas();
+        getChildren().add(canvas);
+
+        //create the screen
+        screen = new AsciiScreen();
+        pipeline = new MaPsciiRenderPipeline(map, screen, this::present);
+        scheduler = new MaPsciiFrameScheduler(pipeline, this::sizeScreen);
+    }
+
+    /***
+     * Constructor.
+     */
+    public MaPsciiCanvasPane(){
+        super();
+
+        constructorInit();
+    }
+
+    /***
+     * Constructor.
+     * @param background Background character
+     *                   to use for the screen.
+     */
+    public MaPsciiCanvasPane(char background){
+        super();
+
+        backgroundChar = background;
+        constructorInit();
+    }
+
+    /***
+     * Sizes the canvas to the control and
+     * redraws it.
+     */
+    @Override
+    protected void layoutChildren(){
+        double w = getWidth();
+        double h = getHeight();
+        if(canvas.getWidth() != w || canvas.getHeight() != h){
+            canvas.setWidth(w);
+            canvas.setHeight(h);
+            redraw();
+        }//end if
+    }
+
+    /***
+     * Calculates and sets the screen
+     * size based on the current
+     * control size and font.
+     */
+    public void resize(){
+        scheduler.resize();
+    }
+
+    /***
+     * Measures the control and creates the
+     * task which sizes the screen to it.
+     * @return Returns the task, to be run
+     *         on the render thread.
+     */
+    private Runnable sizeScreen(){
+        int screenWidth = (int) (getWidth() / atlas.getCellWidth());
+        int screenHeight = (int) (getHeight() / atlas.getCellHeight());
+
+        return () -> {
+            screen.setWidth(screenWidth);
+            screen.setHeight(screenHeight);
+
+            //the font may have changed
+            sent = new char[0][];
+        };
+    }
+
+    /***
+     * Renders the map to the screen
+     * and then draws it.  The frame is
+     * built on the render thread.
+     */
+    public void render(){
+        scheduler.render();
+    }
+
+    /***
+     * Changes the map on the render
+     * thread, then renders it.
+     * @param change The change to make.
+     */
+    public void render(Runnable change){
+        scheduler.render(change);
+    }
+
+    /***
+     * Runs a task on the render thread,
+     * in order with the frames, without
+     * rendering.
+     * @param task The task.
+     */
+    public void execute(Runnable task){
+        scheduler.execute(task);
+    }
+
+    /***
+     * Pans the map by the x and y
+     * provided and draws it.  The screen
+     * is updated incrementally where the
+     * map allows it.
+     * @param x The x distance in tiles to pan by.
+     * @param y The y distance in tiles to pan by.
+     */
+    public void pan(int x, int y){
+        scheduler.pan(x, y);
+    }
+
+    /***
+     * Hands the rows of a finished frame
+     * which changed to the JavaFX thread.
+     * Called on the render thread.
+     * @param s The screen holding the frame.
+     */
+    private void present(AsciiScreen s){
+        int h = s.getHeight();
+        boolean resized = (sent.length != h) ||
+                          (h > 0 && sent[0].length != s.row(0).length);
+        if(resized)
+            sent = new char[h][];
+
+        synchronized(frameLock){
+            if(resized || pending == null)
+                pending = new char[h][];
+
+            boolean changed = resized;
+            for(int i = 0; i < h; i++){
+                char[] row = s.row(i);
+                if(resized || !Arrays.equals(row, sent[i])){
+                    //the copy is never written to
+                    //so both threads can hold it
+                    sent[i] = row.clone();
+                    pending[i] = sent[i];
+                    changed = true;
+                }//end if
+            }//end for i
+
+            if(changed && !drawScheduled){
+                drawScheduled = true;
+                Platform.runLater(this::drawPending);
+            }//end if
+        }//end synchronized
+    }
+
+    /***
+     * Draws the rows waiting to be drawn.
+     * Runs on the JavaFX thread.
+     */
+    private void drawPending(){
+        char[][] rows;
+        synchronized(frameLock){
+            rows = pending;
+            pending = null;
+            drawScheduled = false;
+        }//end synchronized
+
+        if(rows == null)
+            return;
+
+        if(rows.length != shown.length){
+            shown = rows;
+            redraw();
+            return;
+        }//end if
+
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        for(int i = 0; i < rows.length; i++){
+            if(rows[i] != null){
+                shown[i] = rows[i];
+                drawRow(gc, i);
+            }//end if
+        }//end for i
+    }
+
+    /***
+     * Draws the whole canvas from the rows
+     * last drawn.  Runs on the JavaFX
+     * thread.
+     */
+    private void redraw(){
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.setFill(BACKGROUND);
+        gc.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+
+        for(int i = 0; i < shown.length; i++){
+            if(shown[i] != null)
+                drawRow(gc, i);
+        }//end for i
+    }
+
+    /***
+     * Clears a line of the canvas and
+     * draws a row on it.
+     * @param gc The graphics context.
+     * @param index The line number.
+     */
+    private void drawRow(GraphicsContext gc, int index){
+        double y = index * atlas.getCellHeight();
+        gc.setFill(BACKGROUND);
+        gc.fillRect(0, y, canvas.getWidth(), atlas.getCellHeight());
+        atlas.draw(gc, shown[index], 0, y);
+    }
+}
@@ -0,0 +1,758 @@
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+
+/***
+ * Grid for large, mostly empty worlds.
+ * The grid is cut into square chunks of
+ * CHUNK_SIZE tiles a side, and only the
+ * chunks holding tiles are kept in
+ * memory.  Missing chunks read as empty
+ * positions (null tiles), and a chunk is
+ * created the first time a tile is
+ * written to it and dropped again once
+ * its last tile is removed.
+ * Positions are kept in world
+ * coordinates; the ColumnId of a column
+ * is its world column, and index
+ * position (0,0) is the world position
+ * given by baseColumn and baseRow.  As
+ * with MaPsciiDenseGrid the tile objects
+ * handed out are copies built on demand,
+ * changes made to them must be stored
+ * back with setTile.
+ */
+public class MaPsciiChunkedGrid extends MaPsciiGrid
+{
+    //number of tiles along each side of a chunk
+    public static final int CHUNK_SIZE = 64;
+
+    private static final int CHUNK_SHIFT = 6;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /***
+     * Size of the grid in columns and
+     * rows, and the world position of
+     * index position (0,0).
+     */
+    private int cols;
+    private int rows;
+    private int baseCol;
+    private int baseRow;
+
+    /***
+     * The chunks holding tiles, keyed by
+     * chunk column and row.
+     */
+    private MaPsciiLongMap<Chunk> chunks = new MaPsciiLongMap<>();
+
+    /***
+     * The tile classes held in the grid.
+     */
+    private MaPsciiTileTypes tileTypes = new MaPsciiTileTypes();
+
+    /***
+     * Constructor.
+     */
+    public MaPsciiChunkedGrid(){
+        super();
+    }
+
+    /***
+     * Constructor.  Creates an empty grid
+     * of a given size; every position is
+     * empty until a tile is written to it.
+     * @param baseCol World column of index
+     *                column 0.
+     * @param baseRow World row of index
+     *                row 0.
+     * @param width Width of the grid.
+     * @param height Height of the grid.
+     */
+    public MaPsciiChunkedGrid(int baseCol, int baseRow,
+                              int width, int height){
+        super();
+
+        this.baseCol = baseCol;
+        this.baseRow = baseRow;
+        cols = Math.max(width, 0);
+        rows = Math.max(height, 0);
+    }
+
+    /***
+     * Constructor.  Copies the tiles of
+     * another grid into chunked storage,
+     * leaving out the empty positions.
+     * @param source The grid to copy.
+     */
+    public MaPsciiChunkedGrid(MaPsciiGrid source){
+        super();
+
+        setGuid(source.getGuid());
+        setName(source.getName());
+        setFileName(source.getFileName());
+
+        cols = source.width();
+        rows = source.height();
+        if(cols > 0)
+            baseCol = source.mapX(0);
+        baseRow = source.mapY(0);
+
+        for(int i = 0; i < cols; i++){
+            MaPsciiColumn col = source.column(i);
+            for(int j = 0; j < rows; j++){
+                store(baseCol + i, baseRow + j, col.tile(j));
+            }//end for j
+        }//end for i
+    }
+
+    /***
+     * Retrieves the world column of
+     * index column 0.
+     * @return Returns the world column.
+     */
+    public int baseColumn(){
+        return baseCol;
+    }
+
+    /***
+     * Retrieves the world row of
+     * index row 0.
+     * @return Returns the world row.
+     */
+    public int baseRow(){
+        return baseRow;
+    }
+
+    /***
+     * Retrieves the number of chunks
+     * held in memory.
+     * @return Returns the chunk count.
+     */
+    public int chunkCount(){
+        return chunks.size();
+    }
+
+    /***
+     * Checks whether the chunk holding
+     * an index position is in memory.
+     * @param col Column index.
+     * @param row Row index.
+     * @return Returns true if the chunk
+     *         holds at least one tile.
+     */
+    public boolean hasChunk(int col, int row){
+        return chunks.get(chunkKey(baseCol + col, baseRow + row)) != null;
+    }
+
+    /***
+     * Creates an empty grid with the same
+     * size, position and tile classes as
+     * this one.  Tiles can be loaded into
+     * the copy on another thread and then
+     * moved into this grid with
+     * mergeChunks.
+     * @return Returns the empty grid.
+     */
+    public MaPsciiChunkedGrid emptyCopy(){
+        MaPsciiChunkedGrid copy = new MaPsciiChunkedGrid(baseCol, baseRow, cols, rows);
+        copy.tileTypes = tileTypes;
+        copy.setGuid(getGuid());
+
+        return copy;
+    }
+
+    /***
+     * Moves the chunks of a grid made by
+     * emptyCopy into this grid.  Chunks
+     * this grid already holds are kept.
+     * @param source The grid to take the
+     *               chunks from, it is
+     *               left empty.
+     * @return Returns the number of
+     *         chunks added.
+     */
+    public int mergeChunks(MaPsciiChunkedGrid source){
+        return mergeChunks(source, source.chunks.keys());
+    }
+
+    /***
+     * Moves some of the chunks of a grid
+     * made by emptyCopy into this grid,
+     * discarding the rest.  Chunks this
+     * grid already holds are kept.
+     * @param source The grid to take the
+     *               chunks from, it is
+     *               left empty.
+     * @param keys The keys, as made by
+     *             key, of the chunks to
+     *             take.
+     * @return Returns the number of
+     *         chunks added.
+     */
+    public int mergeChunks(MaPsciiChunkedGrid source, long[] keys){
+        if(source.tileTypes != tileTypes)
+            throw new IllegalArgumentException("MaPsciiChunkedGrid.mergeChunks requires a grid made by emptyCopy.");
+
+        int added = 0;
+        for(long key : keys){
+            Chunk chunk = source.chunks.get(key);
+            if(chunk != null && chunks.get(key) == null){
+                chunks.put(key, chunk);
+                added++;
+            }//end if
+        }//end for key
+        source.chunks.clear();
+
+        if(added > 0)
+            touch();
+
+        return added;
+    }
+
+    /***
+     * Drops the chunks which do not
+     * overlap a window, freeing their
+     * memory.  Their positions read as
+     * empty until they are written again.
+     * Chunks holding changes not yet
+     * saved are kept.
+     * @param keep Index positions whose
+     *             chunks are kept.
+     * @return Returns the number of
+     *         chunks dropped.
+     */
+    public int retainChunks(Rectangle keep){
+        if(allChanged())
+            return 0;
+
+        MaPsciiLongMap<Boolean> unsaved = new MaPsciiLongMap<>();
+        for(long pos : changes()){
+            unsaved.put(chunkKey((int) (pos >> 32), (int) pos), Boolean.TRUE);
+        }//end for pos
+
+        int dropped = 0;
+        for(long key : chunks.keys()){
+            Rectangle r = new Rectangle((keyColumn(key) << CHUNK_SHIFT) - baseCol,
+                                        (keyRow(key) << CHUNK_SHIFT) - baseRow,
+                                        CHUNK_SIZE, CHUNK_SIZE);
+            if(!r.intersects(keep) && unsaved.get(key) == null){
+                chunks.remove(key);
+                dropped++;
+            }//end if
+        }//end for key
+
+        if(dropped > 0)
+            touch();
+
+        return dropped;
+    }
+
+    @Override
+    public List<MaPsciiColumn> getColumns(){
+        //built on demand, changes to the
+        //list are not written back
+        ArrayList<MaPsciiColumn> list = new ArrayList<>(cols);
+        for(int i = 0; i < cols; i++){
+            list.add(column(i));
+        }//end for i
+
+        return list;
+    }
+
+    @Override
+    public int width(){
+        return cols;
+    }
+
+    @Override
+    public int height(){
+        return rows;
+    }
+
+    @Override
+    public MaPsciiColumn column(int index){
+        if(index < 0 || index >= cols){
+            return null;
+        }//end if
+        else{
+            MaPsciiColumn col = new MaPsciiColumn(baseCol + index);
+            for(int j = 0; j < rows; j++){
+                col.getTiles().add(tile(index, j));
+            }//end for j
+
+            return col;
+        }//end else
+    }
+
+    @Override
+    public MaPsciiTile tile(int col, int row){
+        if(col < 0 || col >= cols || row < 0 || row >= rows)
+            return null;
+
+        int wc = baseCol + col;
+        int wr = baseRow + row;
+        Chunk chunk = chunks.get(chunkKey(wc, wr));
+        if(chunk == null)
+            return null;
+        else
+            return chunk.materialize(tileTypes, cell(wc, wr));
+    }
+
+    @Override
+    public MaPsciiTile flyweight(int col, int row){
+        if(col < 0 || col >= cols || row < 0 || row >= rows)
+            return null;
+
+        int wc = baseCol + col;
+        int wr = baseRow + row;
+        Chunk chunk = chunks.get(chunkKey(wc, wr));
+        if(chunk == null){
+            return null;
+        }//end if
+        else{
+            int cell = cell(wc, wr);
+            return tileTypes.flyweight(chunk.types[cell] & 0xFF, chunk.passes[cell]);
+        }//end else
+    }
+
+    @Override
+    public void setTile(int col, int row, MaPsciiTile tile)
+            throws MaPsciiContextException{
+        if(col < 0 || col >= cols || row < 0 || row >= rows){
+            throw new MaPsciiContextException("MaPsciiGrid.setTile requires a valid index position.");
+        }//end if
+
+        store(baseCol + col, baseRow + row, tile);
+        markChanged(col, row);
+        touch();
+    }
+
+    @Override
+    public void reset(int baseCol, int baseRow, int width, int height){
+        chunks.clear();
+        this.baseCol = baseCol;
+        this.baseRow = baseRow;
+        cols = Math.max(width, 0);
+        rows = Math.max(height, 0);
+
+        markAllChanged();
+        touch();
+    }
+
+    @Override
+    public void put(int col, int row,
+                    Class<? extends MaPsciiTile> tileClass,
+                    int x, int y,
+                    MaPsciiTile.RenderPass pass,
+                    String guid){
+        int wc = baseCol + col;
+        int wr = baseRow + row;
+        Chunk chunk = chunkFor(wc, wr);
+        int cell = cell(wc, wr);
+        chunk.set(cell, tileTypes.typeId(tileClass), MaPsciiTileTypes.passCode(pass), x, y);
+        chunk.storeGuid(cell, guid);
+    }
+
+    /***
+     * Retrieves the regions of a window
+     * which fall in chunks held in memory,
+     * one region per chunk.
+     * @param window Index positions to
+     *               look in.
+     * @return Returns the regions, clipped
+     *         to the window and the grid.
+     */
+    @Override
+    public List<Rectangle> regionsIn(Rectangle window){
+        Rectangle r = window.intersection(new Rectangle(0, 0, cols, rows));
+        if(r.isEmpty())
+            return new ArrayList<>();
+
+        int firstCx = (baseCol + r.x) >> CHUNK_SHIFT;
+        int lastCx = (baseCol + r.x + r.width - 1) >> CHUNK_SHIFT;
+        int firstCy = (baseRow + r.y) >> CHUNK_SHIFT;
+        int lastCy = (baseRow + r.y + r.height - 1) >> CHUNK_SHIFT;
+        long span = (long) (lastCx - firstCx + 1) * (lastCy - firstCy + 1);
+
+        ArrayList<Rectangle> regions = new ArrayList<>();
+        if(span <= chunks.size()){
+            //probe every chunk position
+            //in the window
+            for(int cx = firstCx; cx <= lastCx; cx++){
+                for(int cy = firstCy; cy <= lastCy; cy++){
+                    if(chunks.get(key(cx, cy)) != null)
+                        regions.add(chunkRegion(cx, cy, r));
+                }//end for cy
+            }//end for cx
+        }//end if
+        else{
+            //fewer chunks are held than the
+            //window covers, so go through
+            //the chunks instead
+            long[] keys = chunks.keys();
+            Arrays.sort(keys);
+            for(long k : keys){
+                int cx = keyColumn(k);
+                int cy = keyRow(k);
+                if(cx >= firstCx && cx <= lastCx && cy >= firstCy && cy <= lastCy)
+                    regions.add(chunkRegion(cx, cy, r));
+            }//end for k
+        }//end else
+
+        return regions;
+    }
+
+    @Override
+    public void add(MaPsciiColumn col,
+                    MaPsciiTile.Direction dir)
+            throws MaPsciiContextException{
+        int wc;
+        switch(dir){
+            case LEFT:
+                wc = baseCol - 1;
+                break;
+            case RIGHT:
+                wc = baseCol + cols;
+                break;
+            default:
+                throw new MaPsciiContextException("MaPsciiGrid.add requires a horizontal Direction.");
+        }//end switch
+
+        //the first column sets the height
+        //and position of the grid, later
+        //ones must match the height
+        int size = col.getTiles().size();
+        if(cols == 0){
+            rows = size;
+            wc = col.getColumnId();
+        }//end if
+        else if(size != rows){
+            throw new MaPsciiContextException("MaPsciiChunkedGrid.add requires a column matching the grid height.");
+        }//end else if
+
+        for(int j = 0; j < rows; j++){
+            store(wc, baseRow + j, col.tile(j));
+        }//end for j
+
+        if(cols == 0 || dir == MaPsciiTile.Direction.LEFT)
+            baseCol = wc;
+        cols++;
+        for(int j = 0; j < rows; j++){
+            markChanged(wc - baseCol, j);
+        }//end for j
+
+        touch();
+    }
+
+    @Override
+    public void addTiles(MaPsciiTile.Direction dir,
+                         int count,
+                         Class<? extends MaPsciiTile> tileClass)
+            throws MaPsciiContextException{
+        byte type = tileTypes.typeId(tileClass);
+
+        switch(dir){
+            case TOP:
+            case BOTTOM:
+                //there can be no rows
+                //without columns
+                if(count > 0 && cols == 0){
+                    add(new MaPsciiColumn(0), MaPsciiTile.Direction.RIGHT);
+                    count--;
+                }//end if
+
+                if(count > 0){
+                    //fill the new rows working
+                    //out from the edge
+                    int y = newRowY(dir);
+                    int firstRow;
+                    if(dir == MaPsciiTile.Direction.TOP){
+                        baseRow -= count;
+                        firstRow = baseRow;
+                    }//end if
+                    else{
+                        firstRow = baseRow + rows;
+                    }//end else
+                    rows += count;
+
+                    for(int i = 0; i < cols; i++){
+                        int wc = baseCol + i;
+                        for(int k = 0; k < count; k++){
+                            int wr = (dir == MaPsciiTile.Direction.TOP) ? firstRow + count - 1 - k : firstRow + k;
+                            int ty = (dir == MaPsciiTile.Direction.TOP) ? y - k : y + k;
+                            storeNew(wc, wr, type, wc, ty);
+                            markChanged(i, wr - baseRow);
+                        }//end for k
+                    }//end for i
+                }//end if
+
+                break;
+            case LEFT:
+            case RIGHT:
+                int yOffset = originY();
+                for(int k = 0; k < count; k++){
+                    int wc = newColumnId(dir);
+                    for(int j = 0; j < rows; j++){
+                        storeNew(wc, baseRow + j, type, wc, j - yOffset);
+                    }//end for j
+
+                    if(dir == MaPsciiTile.Direction.LEFT)
+                        baseCol = wc;
+                    cols++;
+                    for(int j = 0; j < rows; j++){
+                        markChanged(wc - baseCol, j);
+                    }//end for j
+                }//end for k
+
+                break;
+        }//end switch
+
+        touch();
+    }
+
+    @Override
+    public int mapX(int col){
+        return baseCol + col;
+    }
+
+    @Override
+    public int mapY(int row){
+        return baseRow + row;
+    }
+
+    @Override
+    protected int newColumnId(MaPsciiTile.Direction dir){
+        if(dir == MaPsciiTile.Direction.LEFT)
+            return baseCol - 1;
+        else
+            return baseCol + cols;
+    }
+
+    @Override
+    protected int originY(){
+        Chunk chunk = chunks.get(chunkKey(baseCol, baseRow));
+        if(cols == 0 || rows == 0 || chunk == null)
+            return 0;
+
+        int cell = cell(baseCol, baseRow);
+        if(chunk.types[cell] == MaPsciiTileTypes.NO_TILE)
+            return 0;
+        else
+            return chunk.ys[cell] * -1;
+    }
+
+    /***
+     * Builds the region of a window
+     * covered by a chunk.
+     * @param cx Chunk column.
+     * @param cy Chunk row.
+     * @param window Window in index
+     *               positions.
+     * @return Returns the region in
+     *         index positions.
+     */
+    private Rectangle chunkRegion(int cx, int cy, Rectangle window){
+        Rectangle r = new Rectangle((cx << CHUNK_SHIFT) - baseCol,
+                                    (cy << CHUNK_SHIFT) - baseRow,
+                                    CHUNK_SIZE, CHUNK_SIZE);
+        return r.intersection(window);
+    }
+
+    /***
+     * Writes a tile to a world position,
+     * creating or dropping the chunk as
+     * needed.
+     * @param wc World column.
+     * @param wr World row.
+     * @param tile The tile, or null for
+     *             an empty position.
+     */
+    private void store(int wc, int wr, MaPsciiTile tile){
+        long key = chunkKey(wc, wr);
+        Chunk chunk = chunks.get(key);
+        if(chunk == null){
+            if(tile == null)
+                return;
+
+            chunk = new Chunk();
+            chunks.put(key, chunk);
+        }//end if
+
+        if(tile == null){
+            chunk.clear(cell(wc, wr));
+            if(chunk.count == 0)
+                chunks.remove(key);
+        }//end if
+        else{
+            int cell = cell(wc, wr);
+            chunk.set(cell, tileTypes.typeId(tile.getClass()),
+                      MaPsciiTileTypes.passCode(tile.getRenderPass()),
+                      tile.getX(), tile.getY());
+            chunk.storeGuid(cell, tile.getGuid());
+        }//end else
+    }
+
+    /***
+     * Writes a new tile without a render
+     * pass or GUID to a world position.
+     * @param wc World column.
+     * @param wr World row.
+     * @param type Type id of the tile.
+     * @param x X value for the tile.
+     * @param y Y value for the tile.
+     */
+    private void storeNew(int wc, int wr, byte type, int x, int y){
+        Chunk chunk = chunkFor(wc, wr);
+        int cell = cell(wc, wr);
+        chunk.set(cell, type, MaPsciiTileTypes.NO_PASS, x, y);
+        chunk.storeGuid(cell, null);
+    }
+
+    /***
+     * Retrieves the chunk holding a world
+     * position, creating it if needed.
+     * @param wc World column.
+     * @param wr World row.
+     * @return Returns the chunk.
+     */
+    private Chunk chunkFor(int wc, int wr){
+        long key = chunkKey(wc, wr);
+        Chunk chunk = chunks.get(key);
+        if(chunk == null){
+            chunk = new Chunk();
+            chunks.put(key, chunk);
+        }//end if
+
+        return chunk;
+    }
+
+    /***
+     * Builds the key of the chunk holding
+     * a world position.
+     * @param wc World column.
+     * @param wr World row.
+     * @return Returns the chunk key.
+     */
+    private static long chunkKey(int wc, int wr){
+        return key(wc >> CHUNK_SHIFT, wr >> CHUNK_SHIFT);
+    }
+
+    /***
+     * Builds a chunk key.  The loader keys
+     * the chunks it tracks the same way.
+     * @param cx Chunk column.
+     * @param cy Chunk row.
+     * @return Returns the chunk key.  The
+     *         row is biased so that keys
+     *         sort by column and then by
+     *         row.
+     */
+    static long key(int cx, int cy){
+        return ((long) cx << 32) | ((cy ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+    }
+    static int keyColumn(long key){
+        return (int) (key >> 32);
+    }
+    static int keyRow(long key){
+        return (int) key ^ Integer.MIN_VALUE;
+    }
+
+    /***
+     * Finds the cell of a world position
+     * within its chunk.
+     * @param wc World column.
+     * @param wr World row.
+     * @return Returns the cell index.
+     */
+    private static int cell(int wc, int wr){
+        return ((wc & CHUNK_MASK) << CHUNK_SHIFT) | (wr & CHUNK_MASK);
+    }
+
+    /***
+     * The tiles of one chunk, held in
+     * primitive arrays laid out column
+     * by column.
+     */
+    private static class Chunk
+    {
+        private static final int CELLS = CHUNK_SIZE * CHUNK_SIZE;
+
+        final byte[] types = new byte[CELLS];
+        final byte[] passes = new byte[CELLS];
+        final int[] xs = new int[CELLS];
+        final int[] ys = new int[CELLS];
+        final long[] guidHi = new long[CELLS];
+        final long[] guidLo = new long[CELLS];
+
+        /***
+         * GUIDs which are not in the packed
+         * form, keyed by cell.  Created the
+         * first time one is needed.
+         */
+        HashMap<Integer, String> oddGuids;
+
+        /***
+         * Number of cells holding a tile.
+         */
+        int count;
+
+        void set(int cell, byte type, byte pass, int x, int y){
+            if(types[cell] == MaPsciiTileTypes.NO_TILE)
+                count++;
+
+            types[cell] = type;
+            passes[cell] = pass;
+            xs[cell] = x;
+            ys[cell] = y;
+        }
+
+        void clear(int cell){
+            if(types[cell] != MaPsciiTileTypes.NO_TILE)
+                count--;
+
+            types[cell] = MaPsciiTileTypes.NO_TILE;
+            passes[cell] = MaPsciiTileTypes.NO_PASS;
+            xs[cell] = 0;
+            ys[cell] = 0;
+            storeGuid(cell, null);
+        }
+
+        void storeGuid(int cell, String guid){
+            guidHi[cell] = 0;
+            guidLo[cell] = 0;
+            if(oddGuids != null)
+                oddGuids.remove(cell);
+            if(guid == null)
+                return;
+
+            UUID uuid = MaPsciiTileTypes.packGuid(guid);
+            if(uuid != null){
+                guidHi[cell] = uuid.getMostSignificantBits();
+                guidLo[cell] = uuid.getLeastSignificantBits();
+            }//end if
+            else{
+                if(oddGuids == null)
+                    oddGuids = new HashMap<>();
+                oddGuids.put(cell, guid);
+            }//end else
+        }
+
+        String loadGuid(int cell){
+            if(guidHi[cell] != 0 || guidLo[cell] != 0)
+                return MaPsciiTileTypes.formatGuid(guidHi[cell], guidLo[cell]);
+            else if(oddGuids != null)
+                return oddGuids.get(cell);
+            else
+                return null;
+        }
+
+        MaPsciiTile materialize(MaPsciiTileTypes tileTypes, int cell){
+            return tileTypes.materialize(types[cell] & 0xFF, passes[cell],
+                                         xs[cell], ys[cell], loadGuid(cell));
+        }
+    }
+}
@@ -1,4 +1,4 @@
-import java.util.ArrayList;
+import java.util.List;
 
 /***
  * Collection of tiles making up a
@@ -31,9 +31,11 @@ public class MaPsciiColumn
      * The Y value of the tile denotes
      * the position in the column, lower
      * values being higher in the column.
+     * Tiles can be added to either end
+     * of the list in constant time.
      */
-    private ArrayList<MaPsciiTile> tiles;
-    public ArrayList<MaPsciiTile> getTiles(){
+    private MaPsciiDeque<MaPsciiTile> tiles;
+    public List<MaPsciiTile> getTiles(){
         return tiles;
     }
 
@@ -43,7 +45,7 @@ public class MaPsciiColumn
      */
     public MaPsciiColumn(int id){
         columnId = id;
-        tiles = new ArrayList<>();
+        tiles = new MaPsciiDeque<>();
     }
 
     /***
@@ -1,6 +1,7 @@
 import java.awt.*;
 import java.sql.*;
-import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.UUID;
 
 /***
  * Data module class for storage of
@@ -27,10 +28,95 @@ public class MaPsciiDBM
         MaPsciiSquare
     }
 
+    //rows fetched from the database per round trip
+    private static final int FETCH_SIZE = 4096;
+
+    //SQL for finding the extent of the
+    //map tiles for a given map ID
+    private static final String
+            SQL_MAP_BOUNDS = "SELECT MIN(" + FN_MT_MAP_X + "), MAX(" + FN_MT_MAP_X + "), " +
+                             "MIN(" + FN_MT_MAP_Y + "), MAX(" + FN_MT_MAP_Y + ") " +
+                             "FROM " + TN_MAP_TILES + " WHERE " + FN_MT_MAP + " = ?";
+    private static final int CI_MIN_X = 1;
+    private static final int CI_MAX_X = 2;
+    private static final int CI_MIN_Y = 3;
+    private static final int CI_MAX_Y = 4;
+
     //SQL for loading the map tiles
-    //for a given map ID
+    //for a given map ID.  The map and
+    //tile coordinates are each packed
+    //into one long, and the class name
+    //and render pass are decoded into
+    //codes by the query, so each row is
+    //read with four column fetches
+    private static final String
+            SQL_LOAD_TILES_FOR_MAP = "SELECT " + packSQL(FN_MT_MAP_X, FN_MT_MAP_Y) + ", " +
+                                     packSQL(FN_MT_TILE_X, FN_MT_TILE_Y) + ", " +
+                                     codeSQL(FN_MT_CLASS, TILE_CLASSES.values()) + ", " +
+                                     codeSQL(FN_MT_RENDER, MaPsciiTile.RenderPass.values()) + ", " +
+                                     FN_MT_GUID + " " +
+                                     "FROM " + TN_MAP_TILES + " WHERE " + FN_MT_MAP + " = ?";
+    //SQL for loading the map tiles in
+    //a range of MAP_X and MAP_Y values
+    private static final String
+            SQL_LOAD_TILES_IN_RANGE = SQL_LOAD_TILES_FOR_MAP +
+                                      " AND " + FN_MT_MAP_X + " >= ? AND " + FN_MT_MAP_X + " < ?" +
+                                      " AND " + FN_MT_MAP_Y + " >= ? AND " + FN_MT_MAP_Y + " < ?";
+
+    private static final int CI_MAP_XY = 1;
+    private static final int CI_TILE_XY = 2;
+    private static final int CI_CLASS = 3;
+    private static final int CI_RENDER = 4;
+    private static final int CI_GUID = 5;
+
+    //SQL for saving a map, the map row
+    //is updated or else inserted, and
+    //the tiles are matched on MAP_ID,
+    //MAP_X and MAP_Y
+    private static final String
+            SQL_UPDATE_MAP = "UPDATE " + TN_MAP + " SET " + FN_MAP_NAME + " = ? WHERE " + FN_MAP_GUID + " = ?";
+    private static final String
+            SQL_INSERT_MAP = "INSERT INTO " + TN_MAP + " (" + FN_MAP_NAME + ", " + FN_MAP_GUID + ") VALUES (?, ?)";
+    private static final String
+            SQL_DELETE_TILES_FOR_MAP = "DELETE FROM " + TN_MAP_TILES + " WHERE " + FN_MT_MAP + " = ?";
     private static final String
-            SQL_LOAD_TILES_FOR_MAP = "SELECT * FROM MAP_TILES WHERE MAP_ID = '%0$S' ORDER BY MAP_X, MAP_Y";
+            SQL_DELETE_TILE = "DELETE FROM " + TN_MAP_TILES + " WHERE " + FN_MT_MAP + " = ? AND " +
+                              FN_MT_MAP_X + " = ? AND " + FN_MT_MAP_Y + " = ?";
+    private static final String
+            SQL_UPDATE_TILE = "UPDATE " + TN_MAP_TILES + " SET " + FN_MT_GUID + " = ?, " +
+                              FN_MT_CLASS + " = ?, " + FN_MT_TILE_X + " = ?, " + FN_MT_TILE_Y + " = ?, " +
+                              FN_MT_RENDER + " = ? WHERE " + FN_MT_MAP + " = ? AND " +
+                              FN_MT_MAP_X + " = ? AND " + FN_MT_MAP_Y + " = ?";
+    private static final String
+            SQL_INSERT_TILE = "INSERT INTO " + TN_MAP_TILES + " (" + FN_MT_GUID + ", " +
+                              FN_MT_CLASS + ", " + FN_MT_TILE_X + ", " + FN_MT_TILE_Y + ", " +
+                              FN_MT_RENDER + ", " + FN_MT_MAP + ", " +
+                              FN_MT_MAP_X + ", " + FN_MT_MAP_Y + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    //parameter indexes shared by the tile
+    //UPDATE and INSERT statements
+    private static final int PI_GUID = 1;
+    private static final int PI_CLASS = 2;
+    private static final int PI_TILE_X = 3;
+    private static final int PI_TILE_Y = 4;
+    private static final int PI_RENDER = 5;
+    private static final int PI_MAP = 6;
+    private static final int PI_MAP_X = 7;
+    private static final int PI_MAP_Y = 8;
+
+    //tiles written per batch
+    private static final int BATCH_SIZE = 1024;
+
+    //codes for a NULL and an unknown
+    //class name or render pass, known
+    //values being the ordinal plus one
+    private static final int CODE_NULL = 0;
+    private static final int CODE_UNKNOWN = 255;
+
+    /***
+     * Tile classes indexed by class code.
+     */
+    private static final Class<? extends MaPsciiTile>[] CLASS_CODES = classCodes();
 
     /***
      * Property: ConnStr
@@ -44,10 +130,31 @@ public class MaPsciiDBM
         this.connstr = connstr;
     }
 
+    /***
+     * Property: Metrics
+     * Metrics the load and save times are
+     * recorded in, usually those of the
+     * map the grid is rendered by.  May
+     * be null.
+     */
+    private MaPsciiMetrics metrics;
+    public MaPsciiMetrics getMetrics(){
+        return metrics;
+    }
+    public void setMetrics(MaPsciiMetrics value){
+        metrics = value;
+    }
+
     private IMaPsciiExceptionHandler handler;
 
     private Connection conn;
 
+    /***
+     * Statements prepared on the current
+     * connection, keyed by their SQL.
+     */
+    private HashMap<String, PreparedStatement> statements = new HashMap<>();
+
     /***
      * Constructor.
      * @param connectionString The connection
@@ -84,11 +191,20 @@ public class MaPsciiDBM
 
     /***
      * Connects to the database using
-     * the connection string.
+     * the connection string.  A connection
+     * already open is closed first.
      * @return Returns True if the connection
      *         is made; False if not.
      */
     public boolean connect(){
+        //the statements prepared on an open
+        //connection must not be used with the
+        //new one, or a save would batch on one
+        //connection and commit on the other
+        disconnect();
+
+        MaPsciiEvents.Database event = new MaPsciiEvents.Database();
+        event.begin();
         try{
             conn = DriverManager.getConnection(connstr);
         }//end try
@@ -97,12 +213,38 @@ public class MaPsciiDBM
 
             exception(sqle);
 
+            commitEvent(event, MaPsciiEvents.OP_CONNECT, null, 0, false);
             return false;
         }//end catch sqle
 
+        commitEvent(event, MaPsciiEvents.OP_CONNECT, null, 0, true);
         return true;
     }
 
+    /***
+     * Fills in and commits the flight
+     * recorder event of a database
+     * operation, if the recording wants it.
+     * @param event The event, begun.
+     * @param operation The operation.
+     * @param mapGuid The map ID, may be null.
+     * @param rows The tile rows read or
+     *             written.
+     * @param success True if the operation
+     *                succeeded.
+     */
+    private static void commitEvent(MaPsciiEvents.Database event, String operation,
+                                    String mapGuid, long rows, boolean success){
+        if(!event.shouldCommit())
+            return;
+
+        event.operation = operation;
+        event.mapGuid = mapGuid;
+        event.rows = rows;
+        event.success = success;
+        event.commit();
+    }
+
     /***
      * Disconnects the current database
      * connection.
@@ -110,111 +252,540 @@ public class MaPsciiDBM
     public void disconnect(){
         if(conn != null){
             try{
+                for(PreparedStatement ps : statements.values()){
+                    ps.close();
+                }//end for ps
+
                 conn.close();
             }//end try
             catch(SQLException sqle){
                 exception(sqle);
             }//end catch sqle
+
+            statements.clear();
+            conn = null;
+        }//end if
+    }
+
+    /***
+     * Retrieves a prepared statement for
+     * the current connection, preparing
+     * it the first time it is used.
+     * @param sql The SQL of the statement.
+     * @return Returns the statement.
+     * @throws SQLException
+     */
+    private PreparedStatement statement(String sql)
+            throws SQLException{
+        PreparedStatement ps = statements.get(sql);
+        if(ps == null){
+            ps = conn.prepareStatement(sql);
+            statements.put(sql, ps);
         }//end if
+
+        return ps;
     }
 
     /***
      * Loads a MaPsciiGrid object from
-     * the database.
+     * the database.  The grid is sized to
+     * the extent of the MAP_X and MAP_Y
+     * values of the map, and each tile is
+     * placed at its MAP_X and MAP_Y
+     * position; positions without a row
+     * are left empty.
      * @param mapGrid The map grid object
      *                to load data into.
      */
     public void loadMap(MaPsciiGrid mapGrid){
-        //clear the map before loading it
-        ArrayList<MaPsciiColumn> cols = mapGrid.getColumns();
-        cols.clear();
-
-        //get the data set to load from
-        String mapGuid = mapGrid.getGuid();
-        String loadSQL = String.format(SQL_LOAD_TILES_FOR_MAP, mapGuid);
+        MaPsciiEvents.Database event = new MaPsciiEvents.Database();
+        event.begin();
+        long start = System.nanoTime();
+        String mapGuid = mapKey(mapGrid);
+        Rectangle bounds = openMap(mapGrid);
+        int rows = 0;
+        boolean loaded = false;
 
         try{
-            Statement st = conn.createStatement();
-            ResultSet rs = st.executeQuery(loadSQL);
+            PreparedStatement ps = statement(SQL_LOAD_TILES_FOR_MAP);
+            ps.setString(1, mapGuid);
+            rows = readTiles(ps, mapGrid, bounds.x, bounds.y, mapGuid);
+            loaded = true;
+        }//end try
+        catch(SQLException sqle){
+            exception(sqle);
+        }//end catch sqle
 
-            //load the tiles column by column
-            int colIdx = -1;
-            int newIdx = -1;
-            MaPsciiColumn curCol = null;
-            while(rs.next()){
-                //if the column ID has
-                //changed, then start a
-                //new column
-                newIdx = rs.getInt(FN_MT_MAP_X);
-                if(newIdx != colIdx){
-                    colIdx = newIdx;
-                    curCol = new MaPsciiColumn(colIdx);
-                    cols.add(curCol);
+        mapGrid.touch();
+        if(metrics != null)
+            metrics.recordLoad(System.nanoTime() - start);
+        commitEvent(event, MaPsciiEvents.OP_LOAD, mapGuid, rows, loaded);
+    }
+
+    /***
+     * Sizes a MaPsciiGrid object for a map
+     * without loading any tiles, every
+     * position being left empty.  Tiles
+     * can then be loaded a range at a
+     * time with loadTiles.
+     * @param mapGrid The map grid object
+     *                to size.
+     * @return Returns the extent of the
+     *         map in MAP_X and MAP_Y
+     *         values.
+     */
+    public Rectangle openMap(MaPsciiGrid mapGrid){
+        String mapGuid = mapKey(mapGrid);
+        Rectangle bounds = new Rectangle(0, 0, 0, 0);
+
+        try{
+            PreparedStatement ps = statement(SQL_MAP_BOUNDS);
+            ps.setString(1, mapGuid);
+            try(ResultSet rs = ps.executeQuery()){
+                if(rs.next() && rs.getObject(CI_MIN_X) != null){
+                    bounds.x = rs.getInt(CI_MIN_X);
+                    bounds.y = rs.getInt(CI_MIN_Y);
+                    bounds.width = rs.getInt(CI_MAX_X) - bounds.x + 1;
+                    bounds.height = rs.getInt(CI_MAX_Y) - bounds.y + 1;
                 }//end if
+            }//end try
+        }//end try
+        catch(SQLException sqle){
+            exception(sqle);
+        }//end catch sqle
 
-                //create the tile and add
-                //it to the current column
-                if(curCol != null) {
-                    int rowIdx = rs.getInt(FN_MT_MAP_Y);
-                    Point p = new Point(colIdx, rowIdx);
-                    MaPsciiTile tile = loadTile(p, rs);
+        mapGrid.reset(bounds.x, bounds.y, bounds.width, bounds.height);
+        mapGrid.markSaved();
+        return bounds;
+    }
 
-                    if(tile != null){
-                        curCol.getTiles().add(tile);
-                    }//end if
-                    else{
-                        //column load failed
-                    }//end else
+    /***
+     * Loads the tiles of a range of MAP_X
+     * and MAP_Y values into a grid sized
+     * by openMap (or made from one with
+     * emptyCopy).  Tiles already in the
+     * range are replaced.
+     * @param mapGrid The map grid object
+     *                to load data into.
+     * @param range The MAP_X and MAP_Y
+     *              values to load.
+     */
+    public void loadTiles(MaPsciiChunkedGrid mapGrid, Rectangle range){
+        MaPsciiEvents.Database event = new MaPsciiEvents.Database();
+        event.begin();
+        long start = System.nanoTime();
+        String mapGuid = mapKey(mapGrid);
+        int rows = 0;
+        boolean loaded = false;
+
+        try{
+            PreparedStatement ps = statement(SQL_LOAD_TILES_IN_RANGE);
+            ps.setString(1, mapGuid);
+            ps.setInt(2, range.x);
+            ps.setInt(3, range.x + range.width);
+            ps.setInt(4, range.y);
+            ps.setInt(5, range.y + range.height);
+            rows = readTiles(ps, mapGrid, mapGrid.baseColumn(), mapGrid.baseRow(), mapGuid);
+            loaded = true;
+        }//end try
+        catch(SQLException sqle){
+            exception(sqle);
+        }//end catch sqle
+
+        mapGrid.touch();
+        if(metrics != null)
+            metrics.recordLoad(System.nanoTime() - start);
+        commitEvent(event, MaPsciiEvents.OP_LOAD_TILES, mapGuid, rows, loaded);
+    }
+
+    /***
+     * Saves a MaPsciiGrid object to the
+     * database in a single transaction.
+     * Only the tiles changed since the
+     * grid was loaded or last saved are
+     * written; a grid which was never
+     * loaded or saved replaces every tile
+     * stored for the map.  A map or tile
+     * without a GUID is given a new one.
+     * @param mapGrid The map grid object
+     *                to save.
+     * @return Returns True if the map was
+     *         saved; False if not.
+     */
+    public boolean saveMap(MaPsciiGrid mapGrid){
+        MaPsciiEvents.Database event = new MaPsciiEvents.Database();
+        event.begin();
+        long start = System.nanoTime();
+        if(mapGrid.getGuid() == null)
+            mapGrid.setGuid(newGuid());
+        String mapGuid = mapKey(mapGrid);
+        int rows;
+
+        try{
+            conn.setAutoCommit(false);
+            try{
+                PreparedStatement ps = statement(SQL_UPDATE_MAP);
+                ps.setString(1, mapGrid.getName());
+                ps.setString(2, mapGuid);
+                if(ps.executeUpdate() == 0){
+                    ps = statement(SQL_INSERT_MAP);
+                    ps.setString(1, mapGrid.getName());
+                    ps.setString(2, mapGuid);
+                    ps.executeUpdate();
                 }//end if
-            }//end while
+
+                if(mapGrid.allChanged())
+                    rows = writeAllTiles(mapGrid, mapGuid);
+                else
+                    rows = writeChangedTiles(mapGrid, mapGuid);
+
+                conn.commit();
+            }//end try
+            catch(SQLException sqle){
+                conn.rollback();
+                throw sqle;
+            }//end catch sqle
+            finally{
+                conn.setAutoCommit(true);
+            }//end finally
         }//end try
         catch(SQLException sqle){
-            handler.handleException(sqle);
-        }//end sqle
+            exception(sqle);
+            commitEvent(event, MaPsciiEvents.OP_SAVE, mapGuid, 0, false);
+            return false;
+        }//end catch sqle
+
+        mapGrid.markSaved();
+        if(metrics != null)
+            metrics.recordSave(System.nanoTime() - start);
+        commitEvent(event, MaPsciiEvents.OP_SAVE, mapGuid, rows, true);
+        return true;
+    }
+
+    /***
+     * Replaces every tile stored for a map
+     * with the tiles of a grid.
+     * @param mapGrid The map grid object.
+     * @param mapGuid The map ID.
+     * @return Returns the number of tiles
+     *         written.
+     * @throws SQLException
+     */
+    private int writeAllTiles(MaPsciiGrid mapGrid, String mapGuid)
+            throws SQLException{
+        PreparedStatement del = statement(SQL_DELETE_TILES_FOR_MAP);
+        del.setString(1, mapGuid);
+        del.executeUpdate();
+
+        PreparedStatement ins = statement(SQL_INSERT_TILE);
+        int pending = 0;
+        int written = 0;
+        Rectangle all = new Rectangle(0, 0, mapGrid.width(), mapGrid.height());
+        for(Rectangle r : mapGrid.regionsIn(all)){
+            for(int i = r.x; i < r.x + r.width; i++){
+                for(int j = r.y; j < r.y + r.height; j++){
+                    if(mapGrid.flyweight(i, j) == null)
+                        continue;
+
+                    setTileParams(ins, mapGrid, i, j, mapGrid.tile(i, j), mapGuid);
+                    ins.addBatch();
+                    written++;
+                    if(++pending == BATCH_SIZE){
+                        ins.executeBatch();
+                        pending = 0;
+                    }//end if
+                }//end for j
+            }//end for i
+        }//end for r
+
+        if(pending > 0)
+            ins.executeBatch();
+
+        return written;
+    }
+
+    /***
+     * Writes the changed tiles of a grid.
+     * Each tile is updated in place, or
+     * inserted if the map has no tile at
+     * its position yet; positions left
+     * empty are deleted.
+     * @param mapGrid The map grid object.
+     * @param mapGuid The map ID.
+     * @return Returns the number of
+     *         positions written.
+     * @throws SQLException
+     */
+    private int writeChangedTiles(MaPsciiGrid mapGrid, String mapGuid)
+            throws SQLException{
+        long[] changes = mapGrid.changes();
+        if(changes.length == 0)
+            return 0;
+
+        PreparedStatement upd = statement(SQL_UPDATE_TILE);
+        PreparedStatement ins = statement(SQL_INSERT_TILE);
+        PreparedStatement del = statement(SQL_DELETE_TILE);
+        int minX = mapGrid.mapX(0);
+        int minY = mapGrid.mapY(0);
+
+        //the positions in the update batch,
+        //to insert those matching no row
+        long[] updated = new long[BATCH_SIZE];
+        int updates = 0;
+        int deletes = 0;
+
+        for(long pos : changes){
+            int col = (int) (pos >> 32) - minX;
+            int row = (int) pos - minY;
+            MaPsciiTile tile = mapGrid.tile(col, row);
+            if(tile == null){
+                del.setString(1, mapGuid);
+                del.setInt(2, col + minX);
+                del.setInt(3, row + minY);
+                del.addBatch();
+                if(++deletes == BATCH_SIZE){
+                    del.executeBatch();
+                    deletes = 0;
+                }//end if
+            }//end if
+            else{
+                setTileParams(upd, mapGrid, col, row, tile, mapGuid);
+                upd.addBatch();
+                updated[updates++] = pos;
+                if(updates == BATCH_SIZE){
+                    insertMissing(upd, ins, mapGrid, mapGuid, updated, updates);
+                    updates = 0;
+                }//end if
+            }//end else
+        }//end for pos
+
+        if(updates > 0)
+            insertMissing(upd, ins, mapGrid, mapGuid, updated, updates);
+        if(deletes > 0)
+            del.executeBatch();
+
+        return changes.length;
     }
 
     /***
-     * Creates and loads a MaPsciiTile
-     * object from the database.
-     * @param tile The map coordinates
-     *             of the tile to load.
-     * @param rs The ResultSet to load from.
-     * @return Returns the requested
-     *         tile object.
+     * Runs a batch of tile updates and
+     * inserts the tiles which matched no
+     * row.
+     * @param upd The batched UPDATE.
+     * @param ins The INSERT to batch.
+     * @param mapGrid The map grid object.
+     * @param mapGuid The map ID.
+     * @param updated The map positions in
+     *                the UPDATE batch.
+     * @param count The number of positions.
+     * @throws SQLException
      */
-    private MaPsciiTile loadTile(Point tile, ResultSet rs)
+    private static void insertMissing(PreparedStatement upd, PreparedStatement ins,
+                                      MaPsciiGrid mapGrid, String mapGuid,
+                                      long[] updated, int count)
             throws SQLException{
-        MaPsciiTile retTile = null;
+        int minX = mapGrid.mapX(0);
+        int minY = mapGrid.mapY(0);
+        int[] counts = upd.executeBatch();
 
-        //create the tile
-        String className = rs.getString(FN_MT_CLASS);
-        TILE_CLASSES tileClass = TILE_CLASSES.valueOf(className);
-        retTile = createTile(tileClass);
+        int inserts = 0;
+        for(int n = 0; n < count; n++){
+            if(counts[n] == 0){
+                int col = (int) (updated[n] >> 32) - minX;
+                int row = (int) updated[n] - minY;
+                setTileParams(ins, mapGrid, col, row, mapGrid.tile(col, row), mapGuid);
+                ins.addBatch();
+                inserts++;
+            }//end if
+        }//end for n
 
-        //load the tile from the database
-        if(retTile != null){
-            retTile.setGuid(rs.getString(FN_MT_GUID));
-            retTile.setX(rs.getInt(FN_MT_TILE_X));
-            retTile.setY(rs.getInt(FN_MT_TILE_Y));
+        if(inserts > 0)
+            ins.executeBatch();
+    }
+
+    /***
+     * Sets the parameters of a tile UPDATE
+     * or INSERT statement.  A tile without
+     * a GUID is given one, which is also
+     * stored in the grid.
+     * @param ps The statement.
+     * @param mapGrid The map grid object.
+     * @param col Column index of the tile.
+     * @param row Row index of the tile.
+     * @param tile The tile.
+     * @param mapGuid The map ID.
+     * @throws SQLException
+     */
+    private static void setTileParams(PreparedStatement ps, MaPsciiGrid mapGrid,
+                                      int col, int row, MaPsciiTile tile,
+                                      String mapGuid)
+            throws SQLException{
+        String guid = tile.getGuid();
+        if(guid == null){
+            guid = newGuid();
+            tile.setGuid(guid);
 
-            String pass = rs.getString(FN_MT_RENDER);
-            retTile.setRenderPass(MaPsciiTile.RenderPass.valueOf(pass));
+            //grids which hand out copies of
+            //their tiles are given it directly
+            if(mapGrid.tile(col, row) != tile)
+                mapGrid.put(col, row, tile.getClass(), tile.getX(), tile.getY(),
+                            tile.getRenderPass(), guid);
         }//end if
 
-        return retTile;
+        ps.setString(PI_GUID, guid);
+        ps.setString(PI_CLASS, tile.getClass().getSimpleName());
+        ps.setInt(PI_TILE_X, tile.getX());
+        ps.setInt(PI_TILE_Y, tile.getY());
+        if(tile.getRenderPass() == null)
+            ps.setNull(PI_RENDER, Types.VARCHAR);
+        else
+            ps.setString(PI_RENDER, tile.getRenderPass().name());
+        ps.setString(PI_MAP, mapGuid);
+        ps.setInt(PI_MAP_X, mapGrid.mapX(col));
+        ps.setInt(PI_MAP_Y, mapGrid.mapY(row));
+    }
+
+    /***
+     * Creates a new GUID in the form
+     * {XXXXXXXX-XXXX-XXXX-XXXX-XXXXXXXXXXXX}.
+     * @return Returns the GUID.
+     */
+    private static String newGuid(){
+        return "{" + UUID.randomUUID().toString().toUpperCase() + "}";
+    }
+
+    /***
+     * Retrieves the map ID of a grid as
+     * stored in the database.
+     * @param mapGrid The map grid object.
+     * @return Returns the map ID.
+     */
+    private static String mapKey(MaPsciiGrid mapGrid){
+        //the map ID was historically
+        //matched in upper case
+        String mapGuid = mapGrid.getGuid();
+        return (mapGuid == null) ? null : mapGuid.toUpperCase();
+    }
+
+    /***
+     * Runs a tile query and stores the
+     * tiles it returns in a grid.
+     * @param ps The query, with its
+     *           parameters set.
+     * @param mapGrid The grid to store
+     *                the tiles in.
+     * @param minX MAP_X of grid column 0.
+     * @param minY MAP_Y of grid row 0.
+     * @param mapGuid The map ID, used in
+     *                error reports.
+     * @return Returns the number of rows
+     *         read.
+     * @throws SQLException
+     */
+    private int readTiles(PreparedStatement ps, MaPsciiGrid mapGrid,
+                          int minX, int minY, String mapGuid)
+            throws SQLException{
+        boolean badClass = false;
+        boolean badPass = false;
+        int rows = 0;
+
+        ps.setFetchSize(FETCH_SIZE);
+        try(ResultSet rs = ps.executeQuery()){
+            while(rs.next()){
+                rows++;
+                long mapXY = rs.getLong(CI_MAP_XY);
+                long tileXY = rs.getLong(CI_TILE_XY);
+                int classCode = rs.getInt(CI_CLASS);
+                int passCode = rs.getInt(CI_RENDER);
+
+                if(classCode == CODE_NULL || classCode == CODE_UNKNOWN){
+                    badClass = true;
+                    continue;
+                }//end if
+                if(passCode == CODE_UNKNOWN){
+                    badPass = true;
+                    passCode = CODE_NULL;
+                }//end if
+
+                mapGrid.put((int) (mapXY >> 32) - minX,
+                            (int) mapXY - minY,
+                            CLASS_CODES[classCode],
+                            (int) (tileXY >> 32),
+                            (int) tileXY,
+                            MaPsciiTileTypes.renderPass(passCode),
+                            rs.getString(CI_GUID));
+            }//end while
+        }//end try
+
+        //report bad values once per query
+        if(badClass)
+            exception(new IllegalArgumentException("Map " + mapGuid + " has tiles of an unknown class, they were not loaded."));
+        if(badPass)
+            exception(new IllegalArgumentException("Map " + mapGuid + " has tiles with an unknown render pass, they were loaded without one."));
+
+        return rows;
+    }
+
+    /***
+     * Builds the SQL packing two integer
+     * fields into one 64 bit value, the
+     * first in the high half.
+     * @param hi The field for the high half.
+     * @param lo The field for the low half.
+     * @return Returns the SQL expression.
+     */
+    private static String packSQL(String hi, String lo){
+        return "((IFNULL(" + hi + ", 0) << 32) | (IFNULL(" + lo + ", 0) & 4294967295))";
+    }
+
+    /***
+     * Builds the SQL decoding a text field
+     * holding enumeration names into the
+     * ordinal plus one, CODE_NULL for NULL
+     * or CODE_UNKNOWN for any other value.
+     * @param field The field to decode.
+     * @param names The enumeration values.
+     * @return Returns the SQL expression.
+     */
+    private static String codeSQL(String field, Enum<?>[] names){
+        StringBuilder sql = new StringBuilder("(CASE");
+        sql.append(" WHEN ").append(field).append(" IS NULL THEN ").append(CODE_NULL);
+        for(Enum<?> e : names){
+            sql.append(" WHEN ").append(field).append(" = '").append(e.name())
+               .append("' THEN ").append(e.ordinal() + 1);
+        }//end for e
+        sql.append(" ELSE ").append(CODE_UNKNOWN).append(" END)");
+
+        return sql.toString();
+    }
+
+    /***
+     * Builds the table of tile classes
+     * indexed by class code.
+     * @return Returns the table.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Class<? extends MaPsciiTile>[] classCodes(){
+        TILE_CLASSES[] names = TILE_CLASSES.values();
+        Class<? extends MaPsciiTile>[] codes = new Class[names.length + 1];
+        for(TILE_CLASSES name : names){
+            codes[name.ordinal() + 1] = tileClass(name);
+        }//end for name
+
+        return codes;
     }
 
     /***
-     * Creates a tile of the specified
-     * sub-class of MaPsciiTile.
+     * Retrieves the class of the
+     * specified sub-class of MaPsciiTile.
      * @param classType Class type enumeration
-     *                  to create.
-     * @return Returns the tile.
+     *                  to look up.
+     * @return Returns the tile class.
      */
-    private MaPsciiTile createTile(TILE_CLASSES classType){
+    private static Class<? extends MaPsciiTile> tileClass(TILE_CLASSES classType){
         switch (classType){
             case MaPsciiSquare:
-                return new MaPsciiSquare();
+                return MaPsciiSquare.class;
             default:
                 return null;
         }//end switch
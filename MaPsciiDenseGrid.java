@@ -0,0 +1,556 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+
+/***
+ * Grid storing its tiles densely in
+ * primitive arrays rather than as one
+ * object per tile.  For every index
+ * position the grid keeps a tile type
+ * id, a render pass and the tile
+ * coordinates, with the GUID packed
+ * into two longs.  Rendering uses one
+ * shared flyweight tile per type and
+ * render pass; the tile objects handed
+ * out by tile and column are built on
+ * demand and are copies, changes made
+ * to them must be stored back with
+ * setTile.
+ * The storage keeps spare room on all
+ * four sides of the grid so rows and
+ * columns can be added at any edge in
+ * amortized constant time per tile.
+ */
+public class MaPsciiDenseGrid extends MaPsciiGrid
+{
+    //smallest capacity allocated in either direction
+    private static final int MIN_CAPACITY = 8;
+
+    /***
+     * Size of the grid in columns and
+     * rows.
+     */
+    private int cols;
+    private int rows;
+
+    /***
+     * Size of the storage in columns and
+     * rows, and the storage column and row
+     * holding index position (0,0).  The
+     * storage arrays are laid out column
+     * by column.
+     */
+    private int colCap;
+    private int rowCap;
+    private int colOff;
+    private int rowOff;
+
+    private int[] columnIds = new int[0];
+
+    private byte[] types = new byte[0];
+    private byte[] passes = new byte[0];
+    private int[] xs = new int[0];
+    private int[] ys = new int[0];
+    private long[] guidHi = new long[0];
+    private long[] guidLo = new long[0];
+
+    /***
+     * GUIDs which are not in the packed
+     * {XXXXXXXX-XXXX-XXXX-XXXX-XXXXXXXXXXXX}
+     * form, keyed by storage index.
+     */
+    private HashMap<Integer, String> oddGuids = new HashMap<>();
+
+    /***
+     * The tile classes held in the grid.
+     */
+    private MaPsciiTileTypes tileTypes = new MaPsciiTileTypes();
+
+    /***
+     * Constructor.
+     */
+    public MaPsciiDenseGrid(){
+        super();
+    }
+
+    /***
+     * Constructor.  Copies the tiles of
+     * another grid into dense storage.
+     * @param source The grid to copy.
+     */
+    public MaPsciiDenseGrid(MaPsciiGrid source){
+        super();
+
+        setGuid(source.getGuid());
+        setName(source.getName());
+        setFileName(source.getFileName());
+
+        int w = source.width();
+        int h = source.height();
+        allocate(w, h);
+        cols = w;
+        rows = h;
+        setFirstMapRow(source.mapY(0));
+
+        for(int i = 0; i < w; i++){
+            MaPsciiColumn col = source.column(i);
+            columnIds[i] = col.getColumnId();
+            for(int j = 0; j < h; j++){
+                store(index(i, j), col.tile(j));
+            }//end for j
+        }//end for i
+    }
+
+    @Override
+    public List<MaPsciiColumn> getColumns(){
+        //built on demand, changes to the
+        //list are not written back
+        ArrayList<MaPsciiColumn> list = new ArrayList<>(cols);
+        for(int i = 0; i < cols; i++){
+            list.add(column(i));
+        }//end for i
+
+        return list;
+    }
+
+    @Override
+    public int width(){
+        return cols;
+    }
+
+    @Override
+    public int height(){
+        return rows;
+    }
+
+    @Override
+    public MaPsciiColumn column(int index){
+        if(index < 0 || index >= cols){
+            return null;
+        }//end if
+        else{
+            MaPsciiColumn col = new MaPsciiColumn(columnIds[colOff + index]);
+            for(int j = 0; j < rows; j++){
+                col.getTiles().add(materialize(index(index, j)));
+            }//end for j
+
+            return col;
+        }//end else
+    }
+
+    @Override
+    public MaPsciiTile tile(int col, int row){
+        if(col < 0 || col >= cols || row < 0 || row >= rows){
+            return null;
+        }//end if
+        else{
+            return materialize(index(col, row));
+        }//end else
+    }
+
+    @Override
+    public MaPsciiTile flyweight(int col, int row){
+        if(col < 0 || col >= cols || row < 0 || row >= rows){
+            return null;
+        }//end if
+        else{
+            int index = index(col, row);
+            return tileTypes.flyweight(types[index] & 0xFF, passes[index]);
+        }//end else
+    }
+
+    @Override
+    public void setTile(int col, int row, MaPsciiTile tile)
+            throws MaPsciiContextException{
+        if(col < 0 || col >= cols || row < 0 || row >= rows){
+            throw new MaPsciiContextException("MaPsciiGrid.setTile requires a valid index position.");
+        }//end if
+
+        store(index(col, row), tile);
+        markChanged(col, row);
+        touch();
+    }
+
+    @Override
+    public void reset(int baseCol, int baseRow, int width, int height){
+        allocate(width, height);
+        cols = width;
+        rows = height;
+        for(int i = 0; i < width; i++){
+            columnIds[i] = baseCol + i;
+        }//end for i
+        setFirstMapRow(baseRow);
+
+        markAllChanged();
+        touch();
+    }
+
+    @Override
+    public void put(int col, int row,
+                    Class<? extends MaPsciiTile> tileClass,
+                    int x, int y,
+                    MaPsciiTile.RenderPass pass,
+                    String guid){
+        int index = index(col, row);
+        if(!oddGuids.isEmpty())
+            oddGuids.remove(index);
+        types[index] = tileTypes.typeId(tileClass);
+        passes[index] = MaPsciiTileTypes.passCode(pass);
+        xs[index] = x;
+        ys[index] = y;
+        storeGuid(index, guid);
+    }
+
+    @Override
+    public void add(MaPsciiColumn col,
+                    MaPsciiTile.Direction dir)
+            throws MaPsciiContextException{
+        int colIdx;
+        switch(dir){
+            case LEFT:
+                colIdx = 0;
+                break;
+            case RIGHT:
+                colIdx = cols;
+                break;
+            default:
+                throw new MaPsciiContextException("MaPsciiGrid.add requires a horizontal Direction.");
+        }//end switch
+
+        //the first column sets the height
+        //of the grid, later ones must match
+        int size = col.getTiles().size();
+        if(cols == 0){
+            allocate(1, size);
+            rows = size;
+        }//end if
+        else if(size != rows){
+            throw new MaPsciiContextException("MaPsciiDenseGrid.add requires a column matching the grid height.");
+        }//end else if
+
+        colIdx = addColumns((colIdx == 0) ? MaPsciiTile.Direction.LEFT : MaPsciiTile.Direction.RIGHT, 1);
+        columnIds[colOff + colIdx] = col.getColumnId();
+        for(int j = 0; j < rows; j++){
+            store(index(colIdx, j), col.tile(j));
+            markChanged(colIdx, j);
+        }//end for j
+
+        touch();
+    }
+
+    @Override
+    public void addTiles(MaPsciiTile.Direction dir,
+                         int count,
+                         Class<? extends MaPsciiTile> tileClass)
+            throws MaPsciiContextException{
+        byte type = tileTypes.typeId(tileClass);
+
+        switch(dir){
+            case TOP:
+            case BOTTOM:
+                //there can be no rows
+                //without columns
+                if(count > 0 && cols == 0){
+                    add(new MaPsciiColumn(0), MaPsciiTile.Direction.RIGHT);
+                    count--;
+                }//end if
+
+                if(count > 0){
+                    //fill the new rows working
+                    //out from the edge
+                    int y = newRowY(dir);
+                    int step = (dir == MaPsciiTile.Direction.TOP) ? -1 : 1;
+                    int first = addRows(dir, count);
+                    if(dir == MaPsciiTile.Direction.TOP)
+                        setFirstMapRow(mapY(0) - count);
+                    for(int i = 0; i < cols; i++){
+                        int id = columnIds[colOff + i];
+                        for(int k = 0; k < count; k++){
+                            int row = (step < 0) ? first + count - 1 - k : first + k;
+                            int index = index(i, row);
+                            types[index] = type;
+                            xs[index] = id;
+                            ys[index] = y + k * step;
+                            markChanged(i, row);
+                        }//end for k
+                    }//end for i
+                }//end if
+
+                break;
+            case LEFT:
+            case RIGHT:
+                int yOffset = originY();
+                for(int k = 0; k < count; k++){
+                    int id = newColumnId(dir);
+                    int colIdx = addColumns(dir, 1);
+                    columnIds[colOff + colIdx] = id;
+
+                    for(int j = 0; j < rows; j++){
+                        int index = index(colIdx, j);
+                        types[index] = type;
+                        xs[index] = id;
+                        ys[index] = j - yOffset;
+                        markChanged(colIdx, j);
+                    }//end for j
+                }//end for k
+
+                break;
+        }//end switch
+
+        touch();
+    }
+
+    @Override
+    public int mapX(int col){
+        return columnIds[colOff] + col;
+    }
+
+    @Override
+    protected int newColumnId(MaPsciiTile.Direction dir){
+        if(rows == 0)
+            return 0;
+        else if(dir == MaPsciiTile.Direction.LEFT)
+            return columnIds[colOff] - 1;
+        else
+            return columnIds[colOff + cols - 1] + 1;
+    }
+
+    @Override
+    protected int originY(){
+        if(cols == 0 || rows == 0 || types[index(0, 0)] == MaPsciiTileTypes.NO_TILE)
+            return 0;
+        else
+            return ys[index(0, 0)] * -1;
+    }
+
+    /***
+     * Releases the spare room kept around
+     * the grid for growth, shrinking the
+     * storage to the size of the grid.
+     */
+    public void trimToSize(){
+        if(colCap != cols || rowCap != rows)
+            relayout(cols, rows, 0, 0);
+    }
+
+    /***
+     * Converts an index position into
+     * a storage index.
+     * @param col Column index.
+     * @param row Row index.
+     * @return Returns the storage index.
+     */
+    private int index(int col, int row){
+        return (colOff + col) * rowCap + rowOff + row;
+    }
+
+    /***
+     * Adds empty columns to an edge of
+     * the grid, growing the storage if
+     * there is no spare room on that side.
+     * @param dir The edge (LEFT or RIGHT).
+     * @param count Number of columns to add.
+     * @return Returns the index of the
+     *         first column added.
+     */
+    private int addColumns(MaPsciiTile.Direction dir, int count){
+        boolean left = (dir == MaPsciiTile.Direction.LEFT);
+        int leftRoom = colOff;
+        int rightRoom = colCap - colOff - cols;
+        if((left ? leftRoom : rightRoom) < count){
+            //grow the side being added to by
+            //half again, keeping the other side
+            int extra = Math.max(Math.max(count, cols / 2), MIN_CAPACITY);
+            if(left)
+                relayout(extra + cols + rightRoom, rowCap, extra, rowOff);
+            else
+                relayout(leftRoom + cols + extra, rowCap, leftRoom, rowOff);
+        }//end if
+
+        if(left){
+            colOff -= count;
+            cols += count;
+            return 0;
+        }//end if
+        else{
+            cols += count;
+            return cols - count;
+        }//end else
+    }
+
+    /***
+     * Adds empty rows to an edge of the
+     * grid, growing the storage if there
+     * is no spare room on that side.
+     * @param dir The edge (TOP or BOTTOM).
+     * @param count Number of rows to add.
+     * @return Returns the index of the
+     *         first row added.
+     */
+    private int addRows(MaPsciiTile.Direction dir, int count){
+        boolean top = (dir == MaPsciiTile.Direction.TOP);
+        int topRoom = rowOff;
+        int bottomRoom = rowCap - rowOff - rows;
+        if((top ? topRoom : bottomRoom) < count){
+            //grow the side being added to by
+            //half again, keeping the other side
+            int extra = Math.max(Math.max(count, rows / 2), MIN_CAPACITY);
+            if(top)
+                relayout(colCap, extra + rows + bottomRoom, colOff, extra);
+            else
+                relayout(colCap, topRoom + rows + extra, colOff, topRoom);
+        }//end if
+
+        if(top){
+            rowOff -= count;
+            rows += count;
+            return 0;
+        }//end if
+        else{
+            rows += count;
+            return rows - count;
+        }//end else
+    }
+
+    /***
+     * Allocates empty storage of the
+     * given capacity.
+     * @param w Capacity in columns.
+     * @param h Capacity in rows.
+     */
+    private void allocate(int w, int h){
+        int n = w * h;
+        colCap = w;
+        rowCap = h;
+        colOff = 0;
+        rowOff = 0;
+        columnIds = new int[w];
+        types = new byte[n];
+        passes = new byte[n];
+        xs = new int[n];
+        ys = new int[n];
+        guidHi = new long[n];
+        guidLo = new long[n];
+        oddGuids = new HashMap<>();
+    }
+
+    /***
+     * Reallocates the storage, moving
+     * the existing tiles to new offsets.
+     * @param w New capacity in columns.
+     * @param h New capacity in rows.
+     * @param newColOff Storage column to
+     *                  hold column index 0.
+     * @param newRowOff Storage row to hold
+     *                  row index 0.
+     */
+    private void relayout(int w, int h, int newColOff, int newRowOff){
+        int oldRowCap = rowCap;
+        int oldColOff = colOff;
+        int oldRowOff = rowOff;
+        int[] oldIds = columnIds;
+        byte[] oldTypes = types;
+        byte[] oldPasses = passes;
+        int[] oldXs = xs;
+        int[] oldYs = ys;
+        long[] oldHi = guidHi;
+        long[] oldLo = guidLo;
+        HashMap<Integer, String> oldOdd = oddGuids;
+
+        allocate(w, h);
+        colOff = newColOff;
+        rowOff = newRowOff;
+
+        for(int i = 0; i < cols; i++){
+            int from = (oldColOff + i) * oldRowCap + oldRowOff;
+            int to = index(i, 0);
+            columnIds[colOff + i] = oldIds[oldColOff + i];
+            System.arraycopy(oldTypes, from, types, to, rows);
+            System.arraycopy(oldPasses, from, passes, to, rows);
+            System.arraycopy(oldXs, from, xs, to, rows);
+            System.arraycopy(oldYs, from, ys, to, rows);
+            System.arraycopy(oldHi, from, guidHi, to, rows);
+            System.arraycopy(oldLo, from, guidLo, to, rows);
+        }//end for i
+
+        for(Integer index : oldOdd.keySet()){
+            int i = index / oldRowCap - oldColOff;
+            int j = index % oldRowCap - oldRowOff;
+            oddGuids.put(index(i, j), oldOdd.get(index));
+        }//end for index
+    }
+
+    /***
+     * Writes a tile into storage.
+     * @param index Storage index to write.
+     * @param tile The tile, or null for
+     *             an empty position.
+     */
+    private void store(int index, MaPsciiTile tile){
+        oddGuids.remove(index);
+
+        if(tile == null){
+            types[index] = MaPsciiTileTypes.NO_TILE;
+            passes[index] = MaPsciiTileTypes.NO_PASS;
+            xs[index] = 0;
+            ys[index] = 0;
+            guidHi[index] = 0;
+            guidLo[index] = 0;
+        }//end if
+        else{
+            types[index] = tileTypes.typeId(tile.getClass());
+            passes[index] = MaPsciiTileTypes.passCode(tile.getRenderPass());
+            xs[index] = tile.getX();
+            ys[index] = tile.getY();
+            storeGuid(index, tile.getGuid());
+        }//end else
+    }
+
+    /***
+     * Builds a tile object from storage.
+     * @param index Storage index to read.
+     * @return Returns a new tile, or null
+     *         for an empty position.
+     */
+    private MaPsciiTile materialize(int index){
+        return tileTypes.materialize(types[index] & 0xFF, passes[index],
+                                     xs[index], ys[index], loadGuid(index));
+    }
+
+    /***
+     * Packs a GUID into the two long
+     * arrays, or keeps it as a String
+     * if it is not in the packed form.
+     * @param index Storage index to write.
+     * @param guid The GUID, may be null.
+     */
+    private void storeGuid(int index, String guid){
+        guidHi[index] = 0;
+        guidLo[index] = 0;
+        if(guid == null)
+            return;
+
+        UUID uuid = MaPsciiTileTypes.packGuid(guid);
+        if(uuid != null){
+            guidHi[index] = uuid.getMostSignificantBits();
+            guidLo[index] = uuid.getLeastSignificantBits();
+        }//end if
+        else{
+            oddGuids.put(index, guid);
+        }//end else
+    }
+
+    /***
+     * Reads a GUID from storage.
+     * @param index Storage index to read.
+     * @return Returns the GUID, or null
+     *         if the tile has none.
+     */
+    private String loadGuid(int index){
+        if(guidHi[index] == 0 && guidLo[index] == 0)
+            return oddGuids.get(index);
+        else
+            return MaPsciiTileTypes.formatGuid(guidHi[index], guidLo[index]);
+    }
+}
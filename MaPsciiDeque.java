@@ -0,0 +1,206 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/***
+ * List backed by a circular array
+ * with an offset to its first element,
+ * so elements can be added to or
+ * removed from either end in amortized
+ * constant time.  Access by index is
+ * constant time as with an ArrayList.
+ * @param <T> The type of the elements.
+ */
+public class MaPsciiDeque<T> extends AbstractList<T> implements RandomAccess
+{
+    private static final int MIN_CAPACITY = 8;
+
+    /***
+     * The element storage.  The length
+     * is always a power of two so the
+     * index can be wrapped with a mask.
+     */
+    private Object[] elements;
+
+    /***
+     * Storage index of the first element.
+     */
+    private int head;
+
+    private int size;
+
+    /***
+     * Constructor.
+     */
+    public MaPsciiDeque(){
+        elements = new Object[MIN_CAPACITY];
+    }
+
+    /***
+     * Constructor.
+     * @param capacity The number of
+     *                 elements to make
+     *                 room for.
+     */
+    public MaPsciiDeque(int capacity){
+        elements = new Object[capacityFor(capacity)];
+    }
+
+    /***
+     * Constructor.
+     * @param source Collection of elements
+     *               to copy into the list.
+     */
+    public MaPsciiDeque(Collection<? extends T> source){
+        this(source.size());
+        addAll(source);
+    }
+
+    @Override
+    public int size(){
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index){
+        checkIndex(index, size);
+        return (T) elements[slot(index)];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T set(int index, T element){
+        checkIndex(index, size);
+        int s = slot(index);
+        T prev = (T) elements[s];
+        elements[s] = element;
+        return prev;
+    }
+
+    @Override
+    public void add(int index, T element){
+        checkIndex(index, size + 1);
+        ensureCapacity(size + 1);
+
+        if(index == 0){
+            //prepending only moves the head
+            head = (head - 1) & (elements.length - 1);
+        }//end if
+        else if(index < size){
+            //shift whichever side of the
+            //insert point is shorter
+            if(index < size / 2){
+                head = (head - 1) & (elements.length - 1);
+                for(int i = 0; i < index; i++){
+                    elements[slot(i)] = elements[slot(i + 1)];
+                }//end for i
+            }//end if
+            else{
+                for(int i = size; i > index; i--){
+                    elements[slot(i)] = elements[slot(i - 1)];
+                }//end for i
+            }//end else
+        }//end else if
+
+        elements[slot(index)] = element;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T remove(int index){
+        checkIndex(index, size);
+        T prev = (T) elements[slot(index)];
+
+        if(index < size / 2){
+            for(int i = index; i > 0; i--){
+                elements[slot(i)] = elements[slot(i - 1)];
+            }//end for i
+            elements[head] = null;
+            head = (head + 1) & (elements.length - 1);
+        }//end if
+        else{
+            for(int i = index; i < size - 1; i++){
+                elements[slot(i)] = elements[slot(i + 1)];
+            }//end for i
+            elements[slot(size - 1)] = null;
+        }//end else
+
+        size--;
+        modCount++;
+        return prev;
+    }
+
+    @Override
+    public void clear(){
+        Arrays.fill(elements, null);
+        head = 0;
+        size = 0;
+        modCount++;
+    }
+
+    /***
+     * Makes room for at least the given
+     * number of elements.
+     * @param capacity The number of
+     *                 elements to make
+     *                 room for.
+     */
+    public void ensureCapacity(int capacity){
+        if(capacity > elements.length){
+            //unwrap the elements into the
+            //start of the new storage
+            Object[] grown = new Object[capacityFor(capacity)];
+            int first = Math.min(size, elements.length - head);
+            System.arraycopy(elements, head, grown, 0, first);
+            System.arraycopy(elements, 0, grown, first, size - first);
+            elements = grown;
+            head = 0;
+        }//end if
+    }
+
+    /***
+     * Converts a list index into a
+     * storage index.
+     * @param index The list index.
+     * @return Returns the storage index.
+     */
+    private int slot(int index){
+        return (head + index) & (elements.length - 1);
+    }
+
+    /***
+     * Calculates the storage length
+     * for a requested capacity.
+     * @param capacity The number of
+     *                 elements needed.
+     * @return Returns the smallest power
+     *         of two holding at least
+     *         the capacity.
+     */
+    private static int capacityFor(int capacity){
+        if(capacity > (1 << 30))
+            throw new OutOfMemoryError("MaPsciiDeque capacity exceeded.");
+
+        int n = MIN_CAPACITY;
+        while(n < capacity){
+            n <<= 1;
+        }//end while
+
+        return n;
+    }
+
+    /***
+     * Validates a list index.
+     * @param index The list index.
+     * @param limit The index the list
+     *              index must be below.
+     */
+    private void checkIndex(int index, int limit){
+        if(index < 0 || index >= limit)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+}
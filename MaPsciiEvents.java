@@ -0,0 +1,172 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/***
+ * JDK Flight Recorder events for the
+ * render, load and save paths, so a slow
+ * frame or load can be lined up against
+ * the GC and allocation events of the
+ * same recording.
+ * Each event is begun before the work it
+ * times and only filled in when the
+ * recording wants it, so with recording
+ * off the cost is a check of a flag.
+ * The per tile event is disabled unless
+ * a recording turns it on, and the
+ * renderer only checks it once a frame.
+ */
+public final class MaPsciiEvents
+{
+    private static final String CATEGORY = "MaPscii";
+
+    //operations of the storage events
+    public static final String OP_CONNECT = "connect";
+    public static final String OP_LOAD = "load";
+    public static final String OP_LOAD_TILES = "loadTiles";
+    public static final String OP_SAVE = "save";
+
+    private MaPsciiEvents(){}
+
+    /***
+     * A frame rendered by MaPsciiMap.renderMap.
+     */
+    @Name("mapscii.Render")
+    @Label("Map Render")
+    @Description("A viewport of a map rendered to a screen")
+    @Category({CATEGORY, "Render"})
+    @StackTrace(false)
+    public static final class Render extends Event
+    {
+        @Label("Map GUID")
+        public String mapGuid;
+
+        @Label("Scale")
+        public int scale;
+
+        @Label("Center X")
+        public int centerX;
+
+        @Label("Center Y")
+        public int centerY;
+
+        @Label("Width")
+        @Description("Screen columns")
+        public int width;
+
+        @Label("Height")
+        @Description("Screen rows")
+        public int height;
+
+        @Label("Tiles Scanned")
+        public long tilesScanned;
+
+        @Label("Tiles Listed")
+        @Description("Tiles scanned which can reach the screen")
+        public long tilesListed;
+
+        @Label("Lines Blitted")
+        public long linesBlitted;
+
+        @Label("Characters Written")
+        public long charsWritten;
+
+        @Label("Parallel")
+        @Description("The frame was drawn in bands on the common pool")
+        public boolean parallel;
+    }
+
+    /***
+     * One tile drawn by a render.  Disabled
+     * by default, there is one per visible
+     * tile per frame.
+     */
+    @Name("mapscii.RenderTile")
+    @Label("Tile Render")
+    @Description("A tile drawn to a screen")
+    @Category({CATEGORY, "Render"})
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class RenderTile extends Event
+    {
+        @Label("Tile Class")
+        public Class<?> tileClass;
+
+        @Label("Tile X")
+        public int tileX;
+
+        @Label("Tile Y")
+        public int tileY;
+
+        @Label("Scale")
+        public int scale;
+
+        @Label("Lines")
+        @Description("Screen rows written")
+        public int lines;
+
+        @Label("Characters Written")
+        public int chars;
+    }
+
+    /***
+     * A database operation of MaPsciiDBM.
+     */
+    @Name("mapscii.Database")
+    @Label("Map Database")
+    @Description("A connect, load or save against the map database")
+    @Category({CATEGORY, "Storage"})
+    public static final class Database extends Event
+    {
+        @Label("Operation")
+        public String operation;
+
+        @Label("Map GUID")
+        public String mapGuid;
+
+        @Label("Rows")
+        @Description("Tile rows read or written")
+        public long rows;
+
+        @Label("Success")
+        public boolean success;
+    }
+
+    /***
+     * A map file read or written by
+     * MaPsciiMap.loadMap or saveMap.
+     */
+    @Name("mapscii.MapFile")
+    @Label("Map File")
+    @Description("A map loaded from or saved to a file")
+    @Category({CATEGORY, "Storage"})
+    public static final class MapFile extends Event
+    {
+        @Label("Operation")
+        public String operation;
+
+        @Label("Path")
+        public String path;
+
+        @Label("Map GUID")
+        public String mapGuid;
+
+        @Label("Columns")
+        public int columns;
+
+        @Label("Rows")
+        public int rows;
+
+        @Label("Size")
+        @DataAmount
+        public long bytes;
+
+        @Label("Success")
+        public boolean success;
+    }
+}
@@ -7,6 +7,7 @@ import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.Region;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.TilePane;
 import javafx.stage.FileChooser;
@@ -20,21 +21,40 @@ import java.io.File;
  */
 public class MaPsciiForm extends Application
 {
-    private static final String FMT_CONN_STR = "jdbc:sqlite:%0$s";
+    private static final String FMT_CONN_STR = "jdbc:sqlite:%1$s";
 
-    MaPsciiPane mapPane;
+    //argument selecting the canvas pane
+    private static final String ARG_CANVAS = "--canvas";
+
+    IMaPsciiView mapPane;
     MaPsciiMap map;
 
+    //used only on the render thread
+    MaPsciiMapLoader loader;
+
     public static void main(String[] args){
         launch(args);
     }
 
     @Override
     public void start(Stage primaryStage) throws Exception {
-        //map objects
-        mapPane = new MaPsciiPane(MaPsciiTile.GSTAR);
+        //map objects, the canvas pane draws
+        //the map when started with --canvas
+        Region view;
+        if(getParameters().getRaw().contains(ARG_CANVAS)){
+            MaPsciiCanvasPane pane = new MaPsciiCanvasPane(MaPsciiTile.GSTAR);
+            mapPane = pane;
+            view = pane;
+        }//end if
+        else{
+            MaPsciiPane pane = new MaPsciiPane(MaPsciiTile.GSTAR);
+            mapPane = pane;
+            view = pane;
+        }//end else
         map = new MaPsciiMap();
+        map.getMetrics().register("MaPsciiForm");
         mapPane.setMap(map);
+        mapPane.setBeforeRender(center -> loadWindow(center));
 
         //layout objects
         BorderPane root = new BorderPane();
@@ -57,59 +77,88 @@ public class MaPsciiForm extends Application
             @Override
             public void handle(ActionEvent event) {
                 FileChooser fc = new FileChooser();
-                fc.setTitle("Select Map Database File");
+                fc.setTitle("Select Map File");
                 fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("Database files", "*.db"));
-                //fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("Map files", "*.map"));
+                fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("JSON map files", "*.json", "*.json.gz"));
+                fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("Map files", "*.map"));
                 File file = fc.showOpenDialog(primaryStage);
-                if(file != null){
+                //the map is loaded on the render
+                //thread, in order with the frames
+                if(file != null && MaPsciiMap.isMapFile(file.getName())){
+                    mapPane.render(() -> {
+                        if(loader != null){
+                            loader.close();
+                            loader = null;
+                        }//end if
+
+                        if(map.loadMap(file)){
+                            MaPsciiGrid grid = map.getGrid();
+                            map.setScale(1);
+                            map.setMapCenter(new Point(grid.width() / 2, grid.height() / 2));
+                        }//end if
+                    });
+                }//end if
+                else if(file != null){
                     String path = file.getPath();
                     path = path.replace("\\", "\\\\");
                     String dbconnect = String.format(FMT_CONN_STR, path);
 
-                    MaPsciiDBM dbm = new MaPsciiDBM(dbconnect, new Handler());
-                    dbm.connect();
-
-                    MaPsciiGrid grid = new MaPsciiGrid();
-                    grid.setGuid("{02A0EEEE-D254-4839-8075-1C419F580CCA}");
-                    map.setGrid(grid);
-                    dbm.loadMap(grid);
-                    dbm.disconnect();
+                    mapPane.render(() -> {
+                        MaPsciiDBM dbm = new MaPsciiDBM(dbconnect, new Handler());
+                        dbm.setMetrics(map.getMetrics());
+                        dbm.connect();
 
-                    //set the scale and center
-                    map.setScale(1);
-                    map.setMapCenter(new Point(grid.width() / 2, grid.height() / 2));
+                        //the map is loaded a window at a
+                        //time around the map center
+                        if(loader != null)
+                            loader.close();
+                        MaPsciiChunkedGrid grid = new MaPsciiChunkedGrid();
+                        grid.setGuid("{02A0EEEE-D254-4839-8075-1C419F580CCA}");
+                        map.setGrid(grid);
+                        loader = new MaPsciiMapLoader(dbm, grid, new Handler());
+                        loader.setOnLoaded(() -> mapPane.execute(() -> {
+                            if(loadWindow(map.getMapCenter()))
+                                mapPane.render();
+                        }));
+                        loader.open();
 
-                    mapPane.render();
-                }//end if
+                        //set the scale and center
+                        map.setScale(1);
+                        map.setMapCenter(new Point(grid.width() / 2, grid.height() / 2));
+                    });
+                }//end else if
             }
         });
         Button btnSave = new Button("Save Map");
         btnSave.setOnAction(new EventHandler<ActionEvent>() {
             @Override
             public void handle(ActionEvent event) {
-                map.saveMap();
+                //maps loaded from a database
+                //are saved back to it
+                mapPane.execute(() -> {
+                    if(loader != null)
+                        loader.save();
+                    else
+                        map.saveMap();
+                });
             }
         });
         Button btnIn = new Button("Zoom In");
         btnIn.setOnAction(new EventHandler<ActionEvent>() {
             @Override
             public void handle(ActionEvent event) {
-                int scale = map.getScale();
-                scale++;
-                map.setScale(scale);
-                mapPane.render();
+                mapPane.render(() -> map.setScale(map.getScale() + 1));
             }
         });
         Button btnOut = new Button("Zoom Out");
         btnOut.setOnAction(new EventHandler<ActionEvent>() {
             @Override
             public void handle(ActionEvent event) {
-                int scale = map.getScale();
-                if(scale > 1) {
-                    scale--;
-                    map.setScale(scale);
-                    mapPane.render();
-                }//end if
+                mapPane.render(() -> {
+                    int scale = map.getScale();
+                    if(scale > 1)
+                        map.setScale(scale - 1);
+                });
             }
         });
         Button btnUp = new Button("Pan");
@@ -153,11 +202,12 @@ public class MaPsciiForm extends Application
 
         root.setTop(topPanel);
         root.setLeft(centerLeft);
-        root.setCenter(mapPane);
+        root.setCenter(view);
         root.setRight(centerRight);
         root.setBottom(bottomPanel);
 
-        //set up the resize event
+        //set up the resize event, the pane
+        //renders a drag once per pulse
         ChangeListener<Number> stageResize = (observable, oldValue, newValue) -> {
             mapPane.resize();
             mapPane.render();
@@ -179,11 +229,24 @@ public class MaPsciiForm extends Application
      * @param y The y distance in tiles to pan by.
      */
     private void panMap(int x, int y){
-        Point p = map.getMapCenter();
-        p.x += x;
-        p.y += y;
-        map.setMapCenter(p);
-        mapPane.render();
+        mapPane.pan(x, y);
+    }
+
+    /***
+     * Makes sure the tiles around a map
+     * center are loaded before rendering
+     * it, when a map database is open.
+     * Runs on the render thread.
+     * @param center The map center about
+     *               to be rendered.
+     * @return Returns true if the tiles
+     *         in the grid changed.
+     */
+    private boolean loadWindow(Point center){
+        if(loader == null || center == null)
+            return false;
+
+        return loader.update(map, mapPane.getScreen(), center);
     }
 
     private class Handler implements IMaPsciiExceptionHandler
@@ -0,0 +1,214 @@
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+import java.util.ArrayList;
+import java.util.function.Supplier;
+
+/***
+ * Collects the render requests made on
+ * the JavaFX thread and passes them on
+ * to a render pipeline once per pulse,
+ * so a burst of resize, pan and zoom
+ * events between two pulses is rendered
+ * as one frame.  Requests made on any
+ * other thread go straight to the
+ * pipeline.
+ */
+public class MaPsciiFrameScheduler
+{
+    private MaPsciiRenderPipeline pipeline;
+
+    /***
+     * Measures the control and creates the
+     * task which sizes the screen to it.
+     */
+    private Supplier<Runnable> sizer;
+
+    /***
+     * Passes the requests marked since the
+     * last pulse on to the pipeline.  It
+     * runs only while requests are waiting.
+     */
+    private AnimationTimer pulse;
+
+    /***
+     * Requests waiting for the next pulse,
+     * used only on the JavaFX thread.
+     * Pans are added up in panX and panY
+     * until a change is queued after them.
+     */
+    private ArrayList<Runnable> queued = new ArrayList<>();
+    private int panX;
+    private int panY;
+    private boolean renderDirty;
+    private boolean sizeDirty;
+    private boolean pulsing;
+
+    /***
+     * Constructor.
+     * @param pipeline The pipeline to pass
+     *                 the requests to.
+     * @param sizer Measures the control,
+     *              on the JavaFX thread,
+     *              and returns the task
+     *              which sizes the screen.
+     */
+    public MaPsciiFrameScheduler(MaPsciiRenderPipeline pipeline,
+                                 Supplier<Runnable> sizer){
+        this.pipeline = pipeline;
+        this.sizer = sizer;
+
+        pulse = new AnimationTimer(){
+            @Override
+            public void handle(long now){
+                flushRequests();
+            }
+        };
+    }
+
+    /***
+     * Resizes the screen to the control.
+     * On the JavaFX thread the control is
+     * measured at the next pulse.
+     */
+    public void resize(){
+        if(Platform.isFxApplicationThread()){
+            sizeDirty = true;
+            schedulePulse();
+        }//end if
+        else
+            pipeline.execute(sizer.get());
+    }
+
+    /***
+     * Requests a full render.
+     */
+    public void render(){
+        if(Platform.isFxApplicationThread()){
+            renderDirty = true;
+            schedulePulse();
+        }//end if
+        else
+            pipeline.render();
+    }
+
+    /***
+     * Requests a change to the map on the
+     * render thread followed by a render.
+     * @param change The change to make.
+     */
+    public void render(Runnable change){
+        if(Platform.isFxApplicationThread()){
+            queue(change);
+            renderDirty = true;
+            schedulePulse();
+        }//end if
+        else
+            pipeline.render(change);
+    }
+
+    /***
+     * Requests a task on the render thread,
+     * in order with the other requests,
+     * without rendering.
+     * @param task The task.
+     */
+    public void execute(Runnable task){
+        if(Platform.isFxApplicationThread()){
+            queue(task);
+            schedulePulse();
+        }//end if
+        else
+            pipeline.execute(task);
+    }
+
+    /***
+     * Requests a pan of the map.
+     * @param x The x distance in tiles to pan by.
+     * @param y The y distance in tiles to pan by.
+     */
+    public void pan(int x, int y){
+        if(Platform.isFxApplicationThread()){
+            panX += x;
+            panY += y;
+            schedulePulse();
+        }//end if
+        else
+            pipeline.pan(x, y);
+    }
+
+    /***
+     * Queues a change for the next pulse,
+     * after the pans queued before it.
+     * @param change The change.
+     */
+    private void queue(Runnable change){
+        if(panX != 0 || panY != 0){
+            queued.add(pipeline.centerShift(panX, panY));
+            panX = 0;
+            panY = 0;
+            renderDirty = true;
+        }//end if
+
+        queued.add(change);
+    }
+
+    /***
+     * Starts the pulse if it is not
+     * already running.
+     */
+    private void schedulePulse(){
+        if(!pulsing){
+            pulsing = true;
+            pulse.start();
+        }//end if
+    }
+
+    /***
+     * Passes the requests marked since the
+     * last pulse on to the pipeline as at
+     * most one frame.  Runs on the JavaFX
+     * thread once per pulse.
+     */
+    private void flushRequests(){
+        pulse.stop();
+        pulsing = false;
+
+        if(sizeDirty){
+            queued.add(0, sizer.get());
+            sizeDirty = false;
+            renderDirty = true;
+        }//end if
+
+        //a full render takes in the pans
+        if(renderDirty && (panX != 0 || panY != 0)){
+            queued.add(pipeline.centerShift(panX, panY));
+            panX = 0;
+            panY = 0;
+        }//end if
+
+        if(!queued.isEmpty()){
+            ArrayList<Runnable> batch = queued;
+            queued = new ArrayList<>();
+            Runnable changes = () -> {
+                for(Runnable change : batch){
+                    change.run();
+                }//end for change
+            };
+
+            if(renderDirty)
+                pipeline.render(changes);
+            else
+                pipeline.execute(changes);
+        }//end if
+        else if(renderDirty)
+            pipeline.render();
+
+        if(panX != 0 || panY != 0)
+            pipeline.pan(panX, panY);
+
+        panX = 0;
+        panY = 0;
+        renderDirty = false;
+    }
+}
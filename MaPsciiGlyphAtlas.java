@@ -0,0 +1,132 @@
+import javafx.geometry.VPos;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextAlignment;
+
+/***
+ * The printable ascii characters of a
+ * monospace font drawn once into an
+ * image, with the measured size of a
+ * character cell.  Screens are drawn by
+ * copying cells out of the image rather
+ * than laying out text.  Characters
+ * outside the atlas are drawn as text.
+ * It must be created on the JavaFX
+ * application thread.
+ */
+public class MaPsciiGlyphAtlas
+{
+    //range of characters in the atlas
+    private static final char FIRST = 32;
+    private static final char LAST = 126;
+
+    /***
+     * Property: Font
+     * The font the atlas was drawn with.
+     */
+    private Font font;
+    public Font getFont(){
+        return font;
+    }
+
+    /***
+     * Property: CellWidth
+     * The width in pixels of a character,
+     * measured from the font.
+     */
+    private double cellWidth;
+    public double getCellWidth(){
+        return cellWidth;
+    }
+
+    /***
+     * Property: CellHeight
+     * The height in pixels of a line,
+     * measured from the font.
+     */
+    private double cellHeight;
+    public double getCellHeight(){
+        return cellHeight;
+    }
+
+    /***
+     * Width of the slot each character is
+     * drawn in, whole pixels so no slot
+     * bleeds into the next.
+     */
+    private int slotWidth;
+    private int slotHeight;
+
+    private Color color;
+    private Image image;
+
+    /***
+     * Constructor.
+     * @param font The font, which should be
+     *             monospaced.
+     * @param color The color to draw the
+     *              characters in.
+     */
+    public MaPsciiGlyphAtlas(Font font, Color color){
+        this.font = font;
+        this.color = color;
+
+        //measure the cell from a run of
+        //characters so rounding in the
+        //advance of one character evens out
+        Text probe = new Text("MMMMMMMMMM");
+        probe.setFont(font);
+        cellWidth = probe.getLayoutBounds().getWidth() / 10;
+        cellHeight = probe.getLayoutBounds().getHeight();
+        slotWidth = (int) Math.ceil(cellWidth);
+        slotHeight = (int) Math.ceil(cellHeight);
+
+        Canvas canvas = new Canvas(slotWidth * (LAST - FIRST + 1), slotHeight);
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.setFont(font);
+        gc.setFill(color);
+        gc.setTextAlign(TextAlignment.LEFT);
+        gc.setTextBaseline(VPos.TOP);
+        for(char c = FIRST; c <= LAST; c++){
+            gc.fillText(String.valueOf(c), (c - FIRST) * slotWidth, 0);
+        }//end for c
+
+        SnapshotParameters sp = new SnapshotParameters();
+        sp.setFill(Color.TRANSPARENT);
+        image = canvas.snapshot(sp, null);
+    }
+
+    /***
+     * Draws a run of characters.  Spaces
+     * are skipped, the background is left
+     * to the caller.
+     * @param gc The graphics context.
+     * @param chars The characters.
+     * @param x The x of the first character.
+     * @param y The top of the line.
+     */
+    public void draw(GraphicsContext gc, char[] chars, double x, double y){
+        for(int i = 0; i < chars.length; i++){
+            char c = chars[i];
+            if(c == ' ')
+                continue;
+
+            double cx = x + i * cellWidth;
+            if(c > FIRST && c <= LAST){
+                gc.drawImage(image, (c - FIRST) * slotWidth, 0, slotWidth, slotHeight,
+                             cx, y, slotWidth, slotHeight);
+            }//end if
+            else{
+                gc.setFont(font);
+                gc.setFill(color);
+                gc.setTextBaseline(VPos.TOP);
+                gc.fillText(String.valueOf(c), cx, y);
+            }//end else
+        }//end for i
+    }
+}
@@ -0,0 +1,116 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/***
+ * Shared cache of pre-rendered tile
+ * lines.  Tiles which render the same
+ * way share a glyph key (by default
+ * their class), and every line of every
+ * render pass is rendered once per
+ * scale and then reused by all tiles
+ * sharing that key.
+ */
+public final class MaPsciiGlyphCache
+{
+    /***
+     * The glyph sets held in the
+     * cache, keyed by glyph key.
+     */
+    private static final ConcurrentHashMap<Object, GlyphSet> glyphs =
+            new ConcurrentHashMap<>();
+
+    /***
+     * Constructor.  The cache is
+     * static and is never instantiated.
+     */
+    private MaPsciiGlyphCache(){}
+
+    /***
+     * Retrieves the rendered lines for
+     * a glyph key at a given scale,
+     * rendering them from the tile if
+     * they are not yet cached.
+     * @param key The glyph key of the tile.
+     * @param tile A tile to render the
+     *             lines from if needed.
+     * @param scale The render scale to use.
+     * @return Returns the rendered lines
+     *         indexed by render pass
+     *         ordinal and then line.  The
+     *         arrays are shared and must
+     *         not be modified.
+     * @throws IllegalArgumentException if
+     *         the scale is less than one.
+     */
+    static char[][][] lines(Object key, MaPsciiTile tile, int scale){
+        MaPsciiTile.checkScale(scale);
+
+        GlyphSet set = glyphs.get(key);
+        if(set == null){
+            set = new GlyphSet();
+            GlyphSet prev = glyphs.putIfAbsent(key, set);
+            if(prev != null)
+                set = prev;
+        }//end if
+
+        return set.lines(tile, scale);
+    }
+
+    /***
+     * Discards all cached lines for
+     * the specified glyph key.
+     * @param key The glyph key to discard.
+     */
+    public static void invalidate(Object key){
+        if(key != null)
+            glyphs.remove(key);
+    }
+
+    /***
+     * Discards every cached line.
+     */
+    public static void clear(){
+        glyphs.clear();
+    }
+
+    /***
+     * The cached lines for one glyph
+     * key, indexed by scale.  Each scale
+     * is rendered in full and published
+     * with a copy of the scale array so
+     * readers never need to lock.
+     */
+    private static class GlyphSet
+    {
+        private volatile char[][][][] byScale = new char[0][][][];
+
+        char[][][] lines(MaPsciiTile tile, int scale){
+            char[][][][] cur = byScale;
+            if(scale < cur.length && cur[scale] != null)
+                return cur[scale];
+
+            synchronized(this){
+                cur = byScale;
+                if(scale < cur.length && cur[scale] != null)
+                    return cur[scale];
+
+                //render every line of every
+                //pass for this scale
+                MaPsciiTile.RenderPass[] passes = MaPsciiTile.RenderPass.values();
+                int h = tile.calcHeight(scale);
+                char[][][] block = new char[passes.length][h][];
+                for(int p = 0; p < passes.length; p++){
+                    for(int l = 0; l < h; l++){
+                        block[p][l] = tile.renderLine(scale, l, passes[p]).toCharArray();
+                    }//end for l
+                }//end for p
+
+                char[][][][] next = new char[Math.max(cur.length, scale + 1)][][][];
+                System.arraycopy(cur, 0, next, 0, cur.length);
+                next[scale] = block;
+                byScale = next;
+
+                return block;
+            }//end synchronized
+        }
+    }
+}
@@ -1,5 +1,6 @@
 import java.awt.*;
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /***
  * Class representing the stored data
@@ -10,6 +11,11 @@ import java.util.ArrayList;
  * always have a horizontal and vertical
  * component such that the grid forms
  * a rectangle in shape.
+ * Read only grids, such as
+ * MaPsciiMappedGrid, throw
+ * UnsupportedOperationException from
+ * the methods which change the tiles:
+ * setTile, reset, put, add and addTiles.
  */
 public class MaPsciiGrid
 {
@@ -50,13 +56,167 @@ public class MaPsciiGrid
 
     /***
      * Collection of column objects making
-     * up the map.
+     * up the map.  Columns can be added
+     * to either end of the list in
+     * constant time.
      */
-    private ArrayList<MaPsciiColumn> columns = new ArrayList<>();
-    public ArrayList<MaPsciiColumn> getColumns(){
+    private MaPsciiDeque<MaPsciiColumn> columns = new MaPsciiDeque<>();
+    public List<MaPsciiColumn> getColumns(){
         return columns;
     }
 
+    /***
+     * Count of the changes made to the
+     * grid, used by renderers to tell
+     * whether a frame rendered earlier
+     * is still current.
+     */
+    private long revision;
+
+    /***
+     * Retrieves the revision of the
+     * grid.  The revision changes every
+     * time the grid is changed.
+     * @return Returns the grid revision.
+     */
+    public long revision(){
+        return revision;
+    }
+
+    /***
+     * Marks the grid as changed.  This is
+     * done by the grid itself when columns
+     * are added; code which changes tiles
+     * or columns directly must call it so
+     * that frames rendered earlier are not
+     * reused.
+     */
+    public void touch(){
+        revision++;
+    }
+
+    /***
+     * Map row (MAP_Y) of the first row of
+     * the grid.  Map columns (MAP_X) count
+     * up from the ColumnId of the first
+     * column.
+     */
+    private int firstMapRow;
+
+    /***
+     * Map positions of the tiles changed
+     * since the grid was last loaded or
+     * saved, packed as MAP_X in the high
+     * half and MAP_Y in the low half.
+     */
+    private MaPsciiLongMap<Boolean> changes = new MaPsciiLongMap<>();
+
+    /***
+     * Set while every position must be
+     * treated as changed, as for a grid
+     * never loaded or saved.
+     */
+    private boolean allChanged = true;
+
+    /***
+     * Marks the tile at an index position
+     * as changed, so that it is written by
+     * the next save.  This is done by the
+     * grid itself when tiles are set or
+     * added; code which changes tiles
+     * directly must call it as well as
+     * touch.
+     * @param col Column index of the tile.
+     * @param row Row index of the tile.
+     */
+    public void markChanged(int col, int row){
+        if(!allChanged)
+            changes.put(packMapPos(mapX(col), mapY(row)), Boolean.TRUE);
+    }
+
+    /***
+     * Marks every position of the grid as
+     * changed, so that the next save
+     * writes the whole map.
+     */
+    public void markAllChanged(){
+        allChanged = true;
+        changes.clear();
+    }
+
+    /***
+     * Marks the grid as matching the copy
+     * it was loaded from or saved to.
+     */
+    public void markSaved(){
+        allChanged = false;
+        changes.clear();
+    }
+
+    /***
+     * Determines if every position of the
+     * grid is to be treated as changed.
+     * @return Returns True if the whole
+     *         map must be written.
+     */
+    public boolean allChanged(){
+        return allChanged;
+    }
+
+    /***
+     * Retrieves the map positions of the
+     * tiles changed since the last load or
+     * save.  Only meaningful when
+     * allChanged is False.
+     * @return Returns the positions, each
+     *         packed as MAP_X in the high
+     *         half and MAP_Y in the low
+     *         half.
+     */
+    public long[] changes(){
+        return changes.keys();
+    }
+
+    /***
+     * Retrieves the map column (MAP_X) of
+     * a column index.
+     * @param col Column index.
+     * @return Returns the map column.
+     */
+    public int mapX(int col){
+        return columns.get(0).getColumnId() + col;
+    }
+
+    /***
+     * Retrieves the map row (MAP_Y) of a
+     * row index.
+     * @param row Row index.
+     * @return Returns the map row.
+     */
+    public int mapY(int row){
+        return firstMapRow + row;
+    }
+
+    /***
+     * Moves the map row of the first row
+     * of the grid, for grids which keep
+     * their rows themselves.
+     * @param value Map row of row index 0.
+     */
+    protected void setFirstMapRow(int value){
+        firstMapRow = value;
+    }
+
+    /***
+     * Packs a map position into a long.
+     * @param mapX The map column.
+     * @param mapY The map row.
+     * @return Returns the packed position.
+     */
+    public static long packMapPos(int mapX, int mapY){
+        return ((long) mapX << 32) | (mapY & 0xFFFFFFFFL);
+    }
+
     /***
      * Calculates the width of the grid.
      * @return Returns the width of the grid.
@@ -117,6 +277,130 @@ public class MaPsciiGrid
         }//end else
     }
 
+    /***
+     * Retrieves a tile which renders the
+     * same as the tile at the col and row
+     * index specified.  Grids which do not
+     * hold a tile object per position
+     * return a shared flyweight instance,
+     * so only the class and render pass of
+     * the tile returned are meaningful.
+     * @param col Column index of the tile.
+     * @param row Row index of the tile.
+     * @return Returns the tile to render
+     *         for the specified index
+     *         position.  Returns null if
+     *         any index is invalid.
+     */
+    public MaPsciiTile flyweight(int col, int row){
+        return tile(col, row);
+    }
+
+    /***
+     * Retrieves the regions of a window
+     * of index positions which may hold
+     * tiles; every position outside them
+     * is empty.  The regions do not
+     * overlap and are ordered by column
+     * and then by row, regions starting
+     * at the same column covering the
+     * same columns.
+     * @param window Index positions to
+     *               look in.
+     * @return Returns the regions, clipped
+     *         to the window and the grid.
+     */
+    public List<Rectangle> regionsIn(Rectangle window){
+        Rectangle r = window.intersection(new Rectangle(0, 0, width(), height()));
+        if(r.isEmpty())
+            return Collections.emptyList();
+        else
+            return Collections.singletonList(r);
+    }
+
+    /***
+     * Replaces the tile at the col and
+     * row index specified.
+     * @param col Column index of the tile.
+     * @param row Row index of the tile.
+     * @param tile The tile to store, or
+     *             null to remove the tile.
+     * @throws MaPsciiContextException
+     */
+    public void setTile(int col, int row, MaPsciiTile tile)
+            throws MaPsciiContextException{
+        boolean colValid = (col >= 0 && col < columns.size() );
+        boolean rowValid = (row >= 0 && row < height());
+        if(!colValid || !rowValid){
+            throw new MaPsciiContextException("MaPsciiGrid.setTile requires a valid index position.");
+        }//end if
+
+        column(col).getTiles().set(row, tile);
+        markChanged(col, row);
+        touch();
+    }
+
+    /***
+     * Empties the grid and sizes it for a
+     * bulk load, every position holding
+     * no tile.  The columns are given
+     * ColumnIds counting up from baseCol.
+     * Every position is marked as changed
+     * until the loader calls markSaved.
+     * @param baseCol ColumnId of the first
+     *                column.
+     * @param baseRow Map row of the first
+     *                row.
+     * @param width Number of columns.
+     * @param height Number of rows.
+     */
+    public void reset(int baseCol, int baseRow, int width, int height){
+        columns.clear();
+        columns.ensureCapacity(width);
+        for(int i = 0; i < width; i++){
+            MaPsciiColumn col = new MaPsciiColumn(baseCol + i);
+            for(int j = 0; j < height; j++){
+                col.getTiles().add(null);
+            }//end for j
+            columns.add(col);
+        }//end for i
+        firstMapRow = baseRow;
+
+        markAllChanged();
+        touch();
+    }
+
+    /***
+     * Stores a tile during a bulk load.
+     * Grids which do not hold a tile
+     * object per position write the
+     * values straight into storage.  The
+     * position must be valid, and neither
+     * the grid revision nor the changed
+     * positions are updated; the loader
+     * calls touch when done.
+     * @param col Column index of the tile.
+     * @param row Row index of the tile.
+     * @param tileClass Class of the tile.
+     * @param x X value for the tile.
+     * @param y Y value for the tile.
+     * @param pass Render pass of the tile.
+     * @param guid GUID of the tile.
+     */
+    public void put(int col, int row,
+                    Class<? extends MaPsciiTile> tileClass,
+                    int x, int y,
+                    MaPsciiTile.RenderPass pass,
+                    String guid){
+        MaPsciiTile tile = createTile(tileClass, x, y);
+        if(tile != null){
+            tile.setRenderPass(pass);
+            tile.setGuid(guid);
+        }//end if
+
+        columns.get(col).getTiles().set(row, tile);
+    }
+
     /***
      * Retrieves the tile at the index
      * position indicated by a Point object.
@@ -154,5 +438,199 @@ public class MaPsciiGrid
             default:
                 throw new MaPsciiContextException("MaPsciiGrid.add requires a horizontal Direction.");
         }//end switch
+
+        int colIdx = (dir == MaPsciiTile.Direction.LEFT) ? 0 : columns.size() - 1;
+        for(int j = 0; j < col.getTiles().size(); j++){
+            markChanged(colIdx, j);
+        }//end for j
+
+        touch();
+    }
+
+    /***
+     * Adds a row or column of tiles to
+     * the grid.  All tiles added will be
+     * of a specified class.  Only one row
+     * or column can be added per call.
+     * @param dir The direction to add
+     *            the tiles.  TOP or
+     *            BOTTOM adds a row,
+     *            LEFT or RIGHT adds
+     *            a column.
+     * @param tileClass The class to use
+     *                  when creating the
+     *                  tiles to be added.
+     * @throws MaPsciiContextException
+     */
+    public void addTiles(MaPsciiTile.Direction dir,
+                         Class<? extends MaPsciiTile> tileClass)
+            throws MaPsciiContextException{
+        addTiles(dir, 1, tileClass);
+    }
+
+    /***
+     * Adds a number of rows or columns of
+     * tiles to the grid in one pass.  The
+     * result is the same as calling
+     * addTiles for one row or column the
+     * given number of times.
+     * @param dir The direction to add
+     *            the tiles.  TOP or
+     *            BOTTOM adds rows,
+     *            LEFT or RIGHT adds
+     *            columns.
+     * @param count The number of rows or
+     *              columns to add.
+     * @param tileClass The class to use
+     *                  when creating the
+     *                  tiles to be added.
+     * @throws MaPsciiContextException
+     */
+    public void addTiles(MaPsciiTile.Direction dir,
+                         int count,
+                         Class<? extends MaPsciiTile> tileClass)
+            throws MaPsciiContextException{
+        MaPsciiColumn col;
+
+        switch(dir){
+            case TOP:
+            case BOTTOM:
+                //if there are currently
+                //no columns then add one,
+                //there can be no rows
+                //without columns
+                if(count > 0 && columns.size() == 0){
+                    col = new MaPsciiColumn(0);
+                    add(col, MaPsciiTile.Direction.RIGHT);
+                    count--;
+                }//end if
+
+                if(count > 0){
+                    //add the tiles to each column
+                    //working out from the edge
+                    int y = newRowY(dir);
+                    int step = (dir == MaPsciiTile.Direction.TOP) ? -1 : 1;
+                    for(int i = 0; i < columns.size(); i++){
+                        col = column(i);
+                        for(int k = 0; k < count; k++){
+                            MaPsciiTile t = createTile(tileClass, col.getColumnId(), y + k * step);
+                            col.add(t, dir);
+                        }//end for k
+                    }//end for i
+
+                    int firstNew = height() - count;
+                    if(dir == MaPsciiTile.Direction.TOP){
+                        firstMapRow -= count;
+                        firstNew = 0;
+                    }//end if
+                    for(int i = 0; i < columns.size(); i++){
+                        for(int k = 0; k < count; k++){
+                            markChanged(i, firstNew + k);
+                        }//end for k
+                    }//end for i
+                }//end if
+
+                break;
+            case LEFT:
+            case RIGHT:
+                int size = height();
+                int yOffset = originY();
+                columns.ensureCapacity(columns.size() + count);
+
+                for(int k = 0; k < count; k++){
+                    //add the new column
+                    int id = newColumnId(dir);
+                    col = new MaPsciiColumn(id);
+
+                    //fill the column with tiles
+                    for(int i = 0; i < size; i++){
+                        MaPsciiTile t = createTile(tileClass, id, i - yOffset);
+                        col.add(t, MaPsciiTile.Direction.BOTTOM);
+                    }//end for i
+
+                    add(col, dir);
+                }//end for k
+
+                break;
+        }//end switch
+
+        touch();
+    }
+
+    /***
+     * Calculates the Y value for the
+     * tiles of a row about to be added.
+     * @param dir The direction the row
+     *            is added to (TOP or
+     *            BOTTOM).
+     * @return Returns the Y value.
+     */
+    protected int newRowY(MaPsciiTile.Direction dir){
+        int yOffset = originY();
+        if(dir == MaPsciiTile.Direction.TOP)
+            return 0 - yOffset - 1;
+        else
+            return height() - yOffset;
+    }
+
+    /***
+     * Calculates the ColumnId for a
+     * column about to be added.
+     * @param dir The direction the column
+     *            is added to (LEFT or
+     *            RIGHT).
+     * @return Returns the ColumnId.
+     */
+    protected int newColumnId(MaPsciiTile.Direction dir){
+        if(height() == 0)
+            return 0;
+        else if(dir == MaPsciiTile.Direction.LEFT)
+            return column(0).getColumnId() - 1;
+        else
+            return column(width() - 1).getColumnId() + 1;
+    }
+
+    /***
+     * Calculates the vertical component
+     * of the grid origin, the row offset
+     * of the tile with a Y value of zero.
+     * @return Returns the negated Y value
+     *         of the tile at index (0,0),
+     *         or zero if there is none.
+     */
+    protected int originY(){
+        MaPsciiTile tileOrigin = tile(0, 0);
+        if(tileOrigin == null)
+            return 0;
+        else
+            return tileOrigin.getY() * -1;
+    }
+
+    /***
+     * Creates a MaPsciiTile based
+     * on a tile class.
+     * @param tileClass Class of tile
+     *                  to instantiate.
+     * @param x X value for the tile.
+     * @param y Y value for the tile.
+     * @return Returns a new MaPsciiTile
+     *         object.
+     */
+    protected static MaPsciiTile createTile(Class<? extends MaPsciiTile> tileClass,
+                                            int x, int y){
+        MaPsciiTile tile = null;
+
+        try{
+            tile = tileClass.newInstance();
+            tile.setX(x);
+            tile.setY(y);
+        }//end try
+        catch(IllegalAccessException | InstantiationException ie){
+            System.out.println(ie.getMessage());
+            System.out.println(ie.toString());
+            System.out.println(ie.getCause().toString());
+        }//end catch ie
+
+        return tile;
     }
 }
@@ -0,0 +1,412 @@
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.awt.*;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/***
+ * Reads and writes map grids as json
+ * files, streaming the tiles straight
+ * between the file and the grid storage
+ * so no object tree is built for the
+ * map.  Files whose name ends in .gz are
+ * written gzip compressed; compressed
+ * files are recognized when read
+ * whatever their name.
+ * The layout is one object holding the
+ * map GUID, name and extent followed by
+ * the tiles as one flat array, seven
+ * values per tile:
+ *   column, row, class, x, y, pass, GUID
+ * where column and row are grid index
+ * positions.  The class is the class
+ * name the first time a class appears
+ * and its index in order of appearance
+ * after that.  The pass is an index
+ * into the "passes" array plus one,
+ * zero for no render pass.
+ */
+public class MaPsciiJsonFile
+{
+    //layout version written to the files
+    private static final int VERSION = 1;
+
+    //field names
+    private static final String FN_VERSION = "version";
+    private static final String FN_GUID = "guid";
+    private static final String FN_NAME = "name";
+    private static final String FN_MAP_X = "mapX";
+    private static final String FN_MAP_Y = "mapY";
+    private static final String FN_WIDTH = "width";
+    private static final String FN_HEIGHT = "height";
+    private static final String FN_PASSES = "passes";
+    private static final String FN_TILES = "tiles";
+
+    private static final String GZIP_EXT = ".gz";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /***
+     * Factory shared by all reads and
+     * writes, it is thread safe once
+     * configured.
+     */
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    /***
+     * Constructor.  All methods are static.
+     */
+    private MaPsciiJsonFile(){}
+
+    /***
+     * Writes a grid to a json file.
+     * @param grid The grid to write.
+     * @param file The file to write to,
+     *             gzip compressed if the
+     *             name ends in .gz.
+     * @throws IOException
+     */
+    public static void write(MaPsciiGrid grid, File file)
+            throws IOException{
+        try(OutputStream out = openOutput(file)){
+            write(grid, out);
+        }//end try
+    }
+
+    /***
+     * Writes a grid as json to a stream.
+     * The stream is not closed.
+     * @param grid The grid to write.
+     * @param out The stream to write to.
+     * @throws IOException
+     */
+    public static void write(MaPsciiGrid grid, OutputStream out)
+            throws IOException{
+        int w = grid.width();
+        int h = grid.height();
+
+        try(JsonGenerator gen = FACTORY.createGenerator(out)){
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+            gen.writeStartObject();
+            gen.writeNumberField(FN_VERSION, VERSION);
+            gen.writeStringField(FN_GUID, grid.getGuid());
+            gen.writeStringField(FN_NAME, grid.getName());
+            gen.writeNumberField(FN_MAP_X, (w > 0) ? grid.mapX(0) : 0);
+            gen.writeNumberField(FN_MAP_Y, grid.mapY(0));
+            gen.writeNumberField(FN_WIDTH, w);
+            gen.writeNumberField(FN_HEIGHT, h);
+
+            gen.writeArrayFieldStart(FN_PASSES);
+            for(MaPsciiTile.RenderPass pass : MaPsciiTile.RenderPass.values()){
+                gen.writeString(pass.name());
+            }//end for pass
+            gen.writeEndArray();
+
+            HashMap<Class<?>, Integer> types = new HashMap<>();
+            gen.writeArrayFieldStart(FN_TILES);
+            for(Rectangle r : grid.regionsIn(new Rectangle(0, 0, w, h))){
+                for(int i = r.x; i < r.x + r.width; i++){
+                    for(int j = r.y; j < r.y + r.height; j++){
+                        if(grid.flyweight(i, j) == null)
+                            continue;
+
+                        MaPsciiTile t = grid.tile(i, j);
+                        gen.writeNumber(i);
+                        gen.writeNumber(j);
+
+                        Integer type = types.get(t.getClass());
+                        if(type == null){
+                            types.put(t.getClass(), types.size());
+                            gen.writeString(t.getClass().getName());
+                        }//end if
+                        else{
+                            gen.writeNumber(type);
+                        }//end else
+
+                        gen.writeNumber(t.getX());
+                        gen.writeNumber(t.getY());
+                        gen.writeNumber(MaPsciiTileTypes.passCode(t.getRenderPass()));
+                        gen.writeString(t.getGuid());
+                    }//end for j
+                }//end for i
+            }//end for r
+            gen.writeEndArray();
+
+            gen.writeEndObject();
+        }//end try
+    }
+
+    /***
+     * Reads a json file into a grid.  The
+     * grid is emptied and sized to the map
+     * first.
+     * @param file The file to read.
+     * @param grid The grid to load into.
+     * @throws IOException
+     */
+    public static void read(File file, MaPsciiGrid grid)
+            throws IOException{
+        try(InputStream in = openInput(file)){
+            read(in, grid);
+        }//end try
+    }
+
+    /***
+     * Reads json from a stream into a
+     * grid.  The grid is emptied and
+     * sized to the map first.  The stream
+     * is not closed.
+     * @param in The stream to read from.
+     * @param grid The grid to load into.
+     * @throws IOException
+     */
+    public static void read(InputStream in, MaPsciiGrid grid)
+            throws IOException{
+        int mapX = 0;
+        int mapY = 0;
+        int w = 0;
+        int h = 0;
+        MaPsciiTile.RenderPass[] passes = null;
+        boolean sized = false;
+
+        try(JsonParser p = FACTORY.createParser(in)){
+            p.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+
+            if(p.nextToken() != JsonToken.START_OBJECT)
+                throw new IOException("MaPsciiJsonFile.read requires a json object.");
+
+            while(p.nextToken() == JsonToken.FIELD_NAME){
+                String field = p.getCurrentName();
+                p.nextToken();
+
+                switch(field){
+                    case FN_VERSION:
+                        if(p.getIntValue() > VERSION)
+                            throw new IOException("MaPsciiJsonFile.read does not support version " + p.getIntValue() + ".");
+                        break;
+                    case FN_GUID:
+                        grid.setGuid(p.getValueAsString());
+                        break;
+                    case FN_NAME:
+                        grid.setName(p.getValueAsString());
+                        break;
+                    case FN_MAP_X:
+                        mapX = p.getIntValue();
+                        break;
+                    case FN_MAP_Y:
+                        mapY = p.getIntValue();
+                        break;
+                    case FN_WIDTH:
+                        w = p.getIntValue();
+                        break;
+                    case FN_HEIGHT:
+                        h = p.getIntValue();
+                        break;
+                    case FN_PASSES:
+                        passes = readPasses(p);
+                        break;
+                    case FN_TILES:
+                        if(passes == null)
+                            throw new IOException("MaPsciiJsonFile.read requires the passes before the tiles.");
+
+                        grid.reset(mapX, mapY, w, h);
+                        sized = true;
+                        readTiles(p, grid, passes);
+                        break;
+                    default:
+                        p.skipChildren();
+                        break;
+                }//end switch
+            }//end while
+        }//end try
+
+        //a map without tiles
+        if(!sized)
+            grid.reset(mapX, mapY, w, h);
+
+        grid.touch();
+    }
+
+    /***
+     * Reads the render pass names.
+     * @param p The parser, on the start
+     *          of the array.
+     * @return Returns the passes indexed
+     *         by pass code; unknown names
+     *         read as no render pass.
+     * @throws IOException
+     */
+    private static MaPsciiTile.RenderPass[] readPasses(JsonParser p)
+            throws IOException{
+        ArrayList<MaPsciiTile.RenderPass> passes = new ArrayList<>();
+        passes.add(null);
+
+        while(p.nextToken() == JsonToken.VALUE_STRING){
+            MaPsciiTile.RenderPass pass = null;
+            try{
+                pass = MaPsciiTile.RenderPass.valueOf(p.getText());
+            }//end try
+            catch(IllegalArgumentException iae){
+                //left as no render pass
+            }//end catch iae
+            passes.add(pass);
+        }//end while
+
+        return passes.toArray(new MaPsciiTile.RenderPass[0]);
+    }
+
+    /***
+     * Reads the tiles array straight into
+     * a grid.
+     * @param p The parser, on the start
+     *          of the array.
+     * @param grid The grid, sized to the map.
+     * @param passes Render passes by code.
+     * @throws IOException
+     */
+    private static void readTiles(JsonParser p, MaPsciiGrid grid,
+                                  MaPsciiTile.RenderPass[] passes)
+            throws IOException{
+        ArrayList<Class<? extends MaPsciiTile>> types = new ArrayList<>();
+        int w = grid.width();
+        int h = grid.height();
+
+        while(p.nextToken() == JsonToken.VALUE_NUMBER_INT){
+            int col = p.getIntValue();
+            int row = nextInt(p);
+
+            Class<? extends MaPsciiTile> type;
+            if(p.nextToken() == JsonToken.VALUE_STRING){
+                type = tileClass(p.getText());
+                types.add(type);
+            }//end if
+            else{
+                int index = p.getIntValue();
+                if(index < 0 || index >= types.size())
+                    throw new IOException("MaPsciiJsonFile.read found an unknown tile class index " + index + ".");
+                type = types.get(index);
+            }//end else
+
+            int x = nextInt(p);
+            int y = nextInt(p);
+            int pass = nextInt(p);
+            p.nextToken();
+            String guid = p.getValueAsString();
+
+            if(col < 0 || col >= w || row < 0 || row >= h)
+                throw new IOException("MaPsciiJsonFile.read found a tile outside the map at " + col + "," + row + ".");
+
+            grid.put(col, row, type, x, y,
+                     (pass > 0 && pass < passes.length) ? passes[pass] : null,
+                     guid);
+        }//end while
+
+        if(p.currentToken() != JsonToken.END_ARRAY)
+            throw new IOException("MaPsciiJsonFile.read found a malformed tile array.");
+    }
+
+    /***
+     * Reads the next value as an integer.
+     * @param p The parser.
+     * @return Returns the value.
+     * @throws IOException
+     */
+    private static int nextInt(JsonParser p)
+            throws IOException{
+        if(p.nextToken() != JsonToken.VALUE_NUMBER_INT)
+            throw new IOException("MaPsciiJsonFile.read found a malformed tile array.");
+
+        return p.getIntValue();
+    }
+
+    /***
+     * Looks up a tile class by name.
+     * @param name The class name.
+     * @return Returns the tile class.
+     * @throws IOException
+     */
+    private static Class<? extends MaPsciiTile> tileClass(String name)
+            throws IOException{
+        try{
+            //the class is checked before it
+            //is initialized
+            Class<?> c = Class.forName(name, false, MaPsciiTile.class.getClassLoader());
+            return c.asSubclass(MaPsciiTile.class);
+        }//end try
+        catch(ClassNotFoundException | ClassCastException cnfe){
+            throw new IOException("MaPsciiJsonFile.read found an unknown tile class " + name + ".");
+        }//end catch cnfe
+    }
+
+    /***
+     * Opens a file for writing, gzip
+     * compressed if the name ends in .gz,
+     * whatever its case.
+     * @param file The file.
+     * @return Returns the stream.
+     * @throws IOException
+     */
+    private static OutputStream openOutput(File file)
+            throws IOException{
+        OutputStream out = new FileOutputStream(file);
+        try{
+            if(file.getName().toLowerCase().endsWith(GZIP_EXT))
+                return new FastGZIPOutputStream(out);
+            else
+                return new BufferedOutputStream(out, BUFFER_SIZE);
+        }//end try
+        catch(IOException ioe){
+            out.close();
+            throw ioe;
+        }//end catch ioe
+    }
+
+    /***
+     * Opens a file for reading, reading
+     * through gzip if the file starts
+     * with the gzip header.
+     * @param file The file.
+     * @return Returns the stream.
+     * @throws IOException
+     */
+    private static InputStream openInput(File file)
+            throws IOException{
+        BufferedInputStream in = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+        try{
+            in.mark(2);
+            int b0 = in.read();
+            int b1 = in.read();
+            in.reset();
+
+            if(b0 == (GZIPInputStream.GZIP_MAGIC & 0xFF) && b1 == (GZIPInputStream.GZIP_MAGIC >> 8))
+                return new GZIPInputStream(in, BUFFER_SIZE);
+            else
+                return in;
+        }//end try
+        catch(IOException ioe){
+            in.close();
+            throw ioe;
+        }//end catch ioe
+    }
+
+    /***
+     * Private class writing gzip at the
+     * fastest level, at which the tile
+     * array still compresses well.
+     */
+    private static class FastGZIPOutputStream extends GZIPOutputStream
+    {
+        FastGZIPOutputStream(OutputStream out)
+                throws IOException{
+            super(out, BUFFER_SIZE);
+            def.setLevel(Deflater.BEST_SPEED);
+        }
+    }
+}
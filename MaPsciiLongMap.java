@@ -0,0 +1,197 @@
+import java.util.Arrays;
+
+/***
+ * Hash map from primitive long keys to
+ * objects, using open addressing so no
+ * entry or boxed key objects are made.
+ * Null values are not allowed, a null
+ * value marks an empty slot.
+ * @param <V> The type of the values.
+ */
+public class MaPsciiLongMap<V>
+{
+    private static final int MIN_CAPACITY = 16;
+
+    /***
+     * The key and value storage.  The
+     * length is always a power of two so
+     * the slot can be found with a mask.
+     */
+    private long[] keys;
+    private Object[] values;
+
+    private int size;
+
+    /***
+     * Constructor.
+     */
+    public MaPsciiLongMap(){
+        keys = new long[MIN_CAPACITY];
+        values = new Object[MIN_CAPACITY];
+    }
+
+    /***
+     * Retrieves the number of entries
+     * in the map.
+     * @return Returns the entry count.
+     */
+    public int size(){
+        return size;
+    }
+
+    /***
+     * Retrieves the value for a key.
+     * @param key The key to look up.
+     * @return Returns the value, or null
+     *         if the key is not mapped.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key){
+        int mask = keys.length - 1;
+        for(int s = slot(key, mask); values[s] != null; s = (s + 1) & mask){
+            if(keys[s] == key)
+                return (V) values[s];
+        }//end for s
+
+        return null;
+    }
+
+    /***
+     * Maps a key to a value.
+     * @param key The key to map.
+     * @param value The value, must not
+     *              be null.
+     * @return Returns the value previously
+     *         mapped to the key, or null.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value){
+        if(value == null)
+            throw new NullPointerException("MaPsciiLongMap does not allow null values.");
+
+        int mask = keys.length - 1;
+        int s = slot(key, mask);
+        while(values[s] != null){
+            if(keys[s] == key){
+                V prev = (V) values[s];
+                values[s] = value;
+                return prev;
+            }//end if
+            s = (s + 1) & mask;
+        }//end while
+
+        keys[s] = key;
+        values[s] = value;
+        size++;
+
+        //keep the table at most half full
+        if(size * 2 > keys.length)
+            rehash(keys.length * 2);
+
+        return null;
+    }
+
+    /***
+     * Removes the mapping for a key.
+     * @param key The key to remove.
+     * @return Returns the value which was
+     *         mapped to the key, or null.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key){
+        int mask = keys.length - 1;
+        int s = slot(key, mask);
+        while(values[s] != null && keys[s] != key){
+            s = (s + 1) & mask;
+        }//end while
+
+        V prev = (V) values[s];
+        if(prev == null)
+            return null;
+
+        //shift back any entries further
+        //along the probe run which would
+        //no longer be found past the gap
+        int gap = s;
+        for(int n = (gap + 1) & mask; values[n] != null; n = (n + 1) & mask){
+            int home = slot(keys[n], mask);
+            boolean movable = (gap <= n) ? (home <= gap || home > n)
+                                         : (home <= gap && home > n);
+            if(movable){
+                keys[gap] = keys[n];
+                values[gap] = values[n];
+                gap = n;
+            }//end if
+        }//end for n
+
+        values[gap] = null;
+        keys[gap] = 0;
+        size--;
+
+        return prev;
+    }
+
+    /***
+     * Removes every entry.
+     */
+    public void clear(){
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /***
+     * Retrieves a copy of the keys in
+     * the map, in no particular order.
+     * @return Returns the keys.
+     */
+    public long[] keys(){
+        long[] result = new long[size];
+        int n = 0;
+        for(int s = 0; s < values.length; s++){
+            if(values[s] != null)
+                result[n++] = keys[s];
+        }//end for s
+
+        return result;
+    }
+
+    /***
+     * Finds the home slot of a key.
+     * @param key The key.
+     * @param mask The table length less one.
+     * @return Returns the slot index.
+     */
+    private static int slot(long key, int mask){
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /***
+     * Moves the entries into a table
+     * of a new length.
+     * @param capacity The new table length,
+     *                 a power of two.
+     */
+    private void rehash(int capacity){
+        if(capacity > (1 << 30))
+            throw new OutOfMemoryError("MaPsciiLongMap capacity exceeded.");
+
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+
+        int mask = capacity - 1;
+        for(int i = 0; i < oldValues.length; i++){
+            if(oldValues[i] != null){
+                int s = slot(oldKeys[i], mask);
+                while(values[s] != null){
+                    s = (s + 1) & mask;
+                }//end while
+                keys[s] = oldKeys[i];
+                values[s] = oldValues[i];
+            }//end if
+        }//end for i
+    }
+}
@@ -1,9 +1,13 @@
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import java.awt.*;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
 
 /***
  * Class for rendering an ascii graphic
@@ -13,6 +17,13 @@ import java.util.ArrayList;
  * size, rendering only those parts of
  * the map which are visible within the
  * screen's viewport.
+ * Renders keep their working state per
+ * call: renders given a MaPsciiViewport
+ * read nothing from the map but its grid,
+ * so many screens can render one map at
+ * the same time.  The Scale and MapCenter
+ * properties describe the view rendered
+ * by the calls which take no viewport.
  */
 public class MaPsciiMap
 {
@@ -20,7 +31,7 @@ public class MaPsciiMap
      * Property: Grid.
      * The grid holding the map data.
      */
-    private MaPsciiGrid grid;
+    private volatile MaPsciiGrid grid;
     public MaPsciiGrid getGrid(){
         return grid;
     }
@@ -30,9 +41,10 @@ public class MaPsciiMap
 
     /***
      * Property: Scale
-     * The scale at which to render the map.
+     * The scale at which to render the map,
+     * from one.
      */
-    private int scale;
+    private volatile int scale = 1;
     public int getScale(){
         return scale;
     }
@@ -43,81 +55,242 @@ public class MaPsciiMap
     /***
      * Property: MapCenter
      * The current center tile of the
-     * map (in map coordinates).
+     * map (in map coordinates).  The
+     * point is copied both ways, so the
+     * center only changes through the
+     * setter.
      */
-    private Point mapCenter;
+    private volatile Point mapCenter;
     public Point getMapCenter(){
-        return mapCenter;
+        Point c = mapCenter;
+        return (c == null) ? null : new Point(c);
     }
     public void setMapCenter(Point value){
-        mapCenter = value;
+        mapCenter = (value == null) ? null : new Point(value);
     }
 
-    private RenderContext rcon = new RenderContext(0,0,0,0);
+    /***
+     * Property: ParallelRender
+     * Determines if large screens are
+     * rendered in horizontal bands by
+     * the common ForkJoin pool.  The
+     * result is the same as a serial
+     * render.
+     */
+    private boolean parallelRender;
+    public boolean getParallelRender(){
+        return parallelRender;
+    }
+    public void setParallelRender(boolean value){
+        parallelRender = value;
+    }
 
     /***
-     * Constructor.
+     * Property: ParallelThreshold
+     * The number of screen characters
+     * below which a screen is rendered
+     * serially even when parallel
+     * rendering is turned on.
      */
-    public MaPsciiMap(){}
+    private int parallelThreshold = 64 * 1024;
+    public int getParallelThreshold(){
+        return parallelThreshold;
+    }
+    public void setParallelThreshold(int value){
+        parallelThreshold = value;
+    }
 
     /***
-     * Creates a MaPsciiTile based
-     * on a tile class.
-     * @param tileClass Class of tile
-     *                  to instantiate.
-     * @param x X value for the tile.
-     * @param y Y value for the tile.
-     * @return Returns a new MaPsciiTile
-     *         object.
+     * Property: Metrics
+     * Rolling statistics of the frames
+     * rendered from the map.  Publish them
+     * with register to read them over JMX.
      */
-    private MaPsciiTile createTile(Class<? extends MaPsciiTile> tileClass,
-                                   int x, int y){
-        MaPsciiTile tile = null;
+    private final MaPsciiMetrics metrics = new MaPsciiMetrics();
+    public MaPsciiMetrics getMetrics(){
+        return metrics;
+    }
 
-        try{
-            tile = tileClass.newInstance();
-            tile.setX(x);
-            tile.setY(y);
-        }//end try
-        catch(IllegalAccessException | InstantiationException ie){
-            System.out.println(ie.getMessage());
-            System.out.println(ie.toString());
-            System.out.println(ie.getCause().toString());
-        }//end catch ie
+    /***
+     * Property: LastStats
+     * The statistics of the last frame
+     * rendered or panned on any thread,
+     * null before the first.  Once the
+     * frame is flushed they include the
+     * flush time.
+     */
+    private final AtomicReference<RenderStats> lastStats = new AtomicReference<>();
+    public RenderStats getLastStats(){
+        return lastStats.get();
+    }
 
-        return tile;
+    /***
+     * Records the time taken to flush a
+     * frame out of its screen, republishing
+     * the statistics of the frame with it.
+     * The last statistics are only replaced
+     * if no frame was published since.
+     * @param stats The statistics of the frame.
+     * @param nanos The time taken.
+     * @return Returns the statistics with
+     *         the flush time.
+     */
+    public RenderStats recordFlush(RenderStats stats, long nanos){
+        RenderStats flushed = stats.withFlush(nanos);
+        lastStats.compareAndSet(stats, flushed);
+        metrics.recordFlush(flushed);
+        return flushed;
     }
 
+    //extension of binary map files
+    private static final String MAP_FILE_EXT = ".map";
+
     /***
-     * Saves the map data to a json file.
+     * Determines if a file name is one of
+     * the map files loadMap reads, rather
+     * than a database.  Case is ignored.
+     * @param name The file name.
+     * @return Returns True for .json,
+     *         .json.gz and .map files.
      */
-    public void saveMap(){
-        if(grid != null) {
-            File file;
+    public static boolean isMapFile(String name){
+        String n = name.toLowerCase();
+        return n.endsWith(".json") || n.endsWith(".json.gz") || isMappedFile(name);
+    }
+
+    /***
+     * Determines if a file name is that of
+     * a binary map file, which loadMap
+     * memory maps.  Case is ignored.
+     * @param name The file name.
+     * @return Returns True for .map files.
+     */
+    public static boolean isMappedFile(String name){
+        return name.toLowerCase().endsWith(MAP_FILE_EXT);
+    }
+
+    //fewest lines worth giving a worker
+    private static final int MIN_BAND_LINES = 8;
+
+    /***
+     * Render lists not in use, kept to be
+     * reused by the next render whichever
+     * thread it runs on.
+     */
+    private final ConcurrentLinkedQueue<RenderList> spareLists = new ConcurrentLinkedQueue<>();
+
+    /***
+     * Constructor.
+     */
+    public MaPsciiMap(){}
+
+    /***
+     * Saves the map data to a json file,
+     * gzip compressed if the file name
+     * ends in .gz.
+     * @return Returns True if the map was
+     *         saved; False if not.
+     */
+    public boolean saveMap(){
+        MaPsciiGrid g = grid;
+        if(g != null) {
+            MaPsciiEvents.MapFile event = new MaPsciiEvents.MapFile();
+            event.begin();
+            File file = null;
+            boolean saved = false;
             try {
-                String fn = grid.getFileName();
+                String fn = g.getFileName();
                 if(fn == null){
                     fn = "C:\\Debug\\mapGrid.json";
                 }//end if
 
                 file = new File(fn);
-                ObjectMapper om = new ObjectMapper();
-                om.enableDefaultTyping();
-
-                om.writeValue(file, grid);
+                MaPsciiJsonFile.write(g, file);
+                saved = true;
             }//end try
             catch (IOException ioe) {
+                System.out.println(ioe.getMessage());
             }//end catch ioe
+            finally {
+                commitFileEvent(event, MaPsciiEvents.OP_SAVE, file, g, saved);
+            }//end finally
+
+            return saved;
         }//end if
+
+        return false;
     }
 
     /***
      * Creates and loads a map grid from
-     * a json file.
+     * a json file, plain or gzip
+     * compressed, or opens a binary .map
+     * file.  Json tiles are read into
+     * chunked storage and the map is
+     * saved back to the same file; .map
+     * files are memory mapped read only
+     * and saved as json beside the file.
      * @param file The file to load.
+     * @return Returns True if the map was
+     *         loaded; False if not.
      */
-    public void loadMap(File file){
+    public boolean loadMap(File file){
+        MaPsciiEvents.MapFile event = new MaPsciiEvents.MapFile();
+        event.begin();
+
+        MaPsciiGrid loaded;
+        String fn = file.getPath();
+        try{
+            if(isMappedFile(fn)){
+                loaded = new MaPsciiMappedGrid(file);
+                fn = fn.substring(0, fn.length() - MAP_FILE_EXT.length()) + ".json";
+            }//end if
+            else{
+                loaded = new MaPsciiChunkedGrid();
+                MaPsciiJsonFile.read(file, loaded);
+            }//end else
+        }//end try
+        catch(IOException ioe){
+            System.out.println(ioe.getMessage());
+            commitFileEvent(event, MaPsciiEvents.OP_LOAD, file, null, false);
+            return false;
+        }//end catch ioe
 
+        loaded.setFileName(fn);
+        grid = loaded;
+        commitFileEvent(event, MaPsciiEvents.OP_LOAD, file, loaded, true);
+        return true;
+    }
+
+    /***
+     * Fills in and commits the flight
+     * recorder event of a map file load
+     * or save, if the recording wants it.
+     * @param event The event, begun.
+     * @param operation The operation.
+     * @param file The file, may be null.
+     * @param g The grid loaded or saved,
+     *          may be null.
+     * @param success True if the operation
+     *                succeeded.
+     */
+    private static void commitFileEvent(MaPsciiEvents.MapFile event, String operation,
+                                        File file, MaPsciiGrid g, boolean success){
+        if(!event.shouldCommit())
+            return;
+
+        event.operation = operation;
+        if(file != null){
+            event.path = file.getPath();
+            event.bytes = file.length();
+        }//end if
+        if(g != null){
+            event.mapGuid = g.getGuid();
+            event.columns = g.width();
+            event.rows = g.height();
+        }//end if
+        event.success = success;
+        event.commit();
     }
 
     /***
@@ -163,184 +336,651 @@ public class MaPsciiMap
     public void addTiles(MaPsciiTile.Direction dir,
                          Class<? extends MaPsciiTile> tileClass)
             throws MaPsciiContextException{
-        MaPsciiColumn col;
-        int id, size;
-
-        switch(dir){
-            case TOP:
-            case BOTTOM:
-                //if there are currently
-                //no columns then add one,
-                //there can be no rows
-                //without columns
-                if(grid.getColumns().size() == 0){
-                    col = new MaPsciiColumn(0);
-                    grid.add(col, MaPsciiTile.Direction.RIGHT);
+        grid.addTiles(dir, tileClass);
+    }
+
+    /***
+     * Adds a number of rows or columns of
+     * tiles to the map data in one pass.
+     * All tiles added will be of a
+     * specified class.
+     * @param dir The direction to add
+     *            the tiles.  TOP or
+     *            BOTTOM adds rows,
+     *            LEFT or RIGHT adds
+     *            columns.
+     * @param count The number of rows or
+     *              columns to add.
+     * @param tileClass The class to use
+     *                  when creating the
+     *                  tiles to be added.
+     * @throws MaPsciiContextException
+     */
+    public void addTiles(MaPsciiTile.Direction dir,
+                         int count,
+                         Class<? extends MaPsciiTile> tileClass)
+            throws MaPsciiContextException{
+        grid.addTiles(dir, count, tileClass);
+    }
+
+    /***
+     * Renders the map to a screen,
+     * centered on the map center at
+     * the current scale.
+     * @param screen Screen to render to.
+     */
+    public void renderMap(AsciiScreen screen){
+        renderMap(currentView(screen), screen);
+    }
+
+    /***
+     * Renders a viewport of the map to a
+     * screen.  The screen is sized to the
+     * viewport.  The map properties are not
+     * read or changed, so renders of other
+     * viewports may run at the same time on
+     * other threads, each to its own screen.
+     * @param view The viewport to render.
+     * @param screen Screen to render to.
+     * @return Returns the statistics of
+     *         the frame.
+     */
+    public RenderStats renderMap(MaPsciiViewport view, AsciiScreen screen){
+        //initialize the screen and
+        //get the render context
+        long start = System.nanoTime();
+        screen.setWidth(view.getWidth());
+        screen.setHeight(view.getHeight());
+        screen.initScreen();
+        RenderContext rc = new RenderContext(grid, view);
+        beginEvents(rc);
+
+        if(rc.grid != null) {
+            rc.list = acquireList();
+            try {
+                buildRenderList(rc, calcWindow(rc, rc.mapCenter));
+                rc.buildNanos = System.nanoTime() - start;
+
+                long t0 = System.nanoTime();
+                int width = screen.getWidth();
+                int height = screen.getHeight();
+                if(parallelRender &&
+                   (long) width * height >= parallelThreshold &&
+                   height >= 2 * MIN_BAND_LINES){
+                    rc.parallel = true;
+
+                    //each band renders the tile lines
+                    //falling within it, the bands share
+                    //no screen lines so they need no
+                    //coordination beyond the join
+                    int bands = ForkJoinPool.commonPool().getParallelism() * 2;
+                    int bandLines = Math.max(MIN_BAND_LINES, (height + bands - 1) / bands);
+                    BandTask task = new BandTask(rc, screen, 0, height, bandLines);
+                    ForkJoinPool.commonPool().invoke(task);
+                    rc.counts.add(task.counts);
                 }//end if
                 else{
-                    //add a tile to each column
-                    int y;
-                    int yOffset = calcOrigin().y;
-                    if(dir == MaPsciiTile.Direction.TOP)
-                        y = 0 - yOffset - 1;
-                    else
-                        y = grid.height() - yOffset;
-
-                    for(int i = 0; i < grid.getColumns().size(); i++){
-                        col = grid.column(i);
-                        MaPsciiTile t = createTile(tileClass,col.getColumnId(), y);
-                        col.add(t, dir);
-                    }//end for i
+                    drawRenderList(rc, screen, new Rectangle(0, 0, width, height), rc.counts);
                 }//end else
+                rc.drawNanos = System.nanoTime() - t0;
+            }//end try
+            finally {
+                releaseList(rc);
+            }//end finally
+        }//end if
 
-                break;
-            case LEFT:
-            case RIGHT:
-                //add the new column
-                size = grid.height();
-                if(size == 0)
-                    id = 0;
-                else if(dir == MaPsciiTile.Direction.LEFT)
-                    id = grid.column(0).getColumnId() - 1;
-                else
-                    id = grid.column(grid.width() - 1).getColumnId() + 1;
-
-                col = new MaPsciiColumn(id);
-
-                //fill the column with tiles
-                int yOffset = calcOrigin().y;
-                for(int i = 0; i < size; i++){
-                    MaPsciiTile t = createTile(tileClass, id, i - yOffset);
-                    col.add(t, MaPsciiTile.Direction.BOTTOM);
-                }//end for i
+        screen.setRenderTag(new FrameTag(this, rc.grid, view, screen));
+        return publish(rc);
+    }
 
-                grid.add(col, dir);
+    /***
+     * Begins the flight recorder event of
+     * a frame and decides, once for the
+     * frame, whether its tiles are traced.
+     * @param rc The render context.
+     */
+    private static void beginEvents(RenderContext rc){
+        rc.event = new MaPsciiEvents.Render();
+        rc.event.begin();
+        rc.traceTiles = new MaPsciiEvents.RenderTile().isEnabled();
+    }
+
+    /***
+     * Creates the statistics of a frame
+     * and records them, and commits the
+     * flight recorder event of the frame.
+     * @param rc The render context.
+     * @return Returns the statistics.
+     */
+    private RenderStats publish(RenderContext rc){
+        RenderStats stats = new RenderStats(rc.view, rc.scanned, rc.listed,
+                                            rc.counts.lines, rc.counts.chars,
+                                            rc.buildNanos, rc.drawNanos, 0);
+        lastStats.set(stats);
+        metrics.recordFrame(stats);
 
-                break;
-        }//end switch
+        MaPsciiEvents.Render event = rc.event;
+        if(event.shouldCommit()){
+            event.mapGuid = (rc.grid != null) ? rc.grid.getGuid() : null;
+            event.scale = rc.scale;
+            event.centerX = rc.mapCenter.x;
+            event.centerY = rc.mapCenter.y;
+            event.width = rc.view.getWidth();
+            event.height = rc.view.getHeight();
+            event.tilesScanned = stats.getTilesScanned();
+            event.tilesListed = stats.getTilesListed();
+            event.linesBlitted = stats.getLinesBlitted();
+            event.charsWritten = stats.getCharsWritten();
+            event.parallel = rc.parallel;
+            event.commit();
+        }//end if
+
+        return stats;
     }
 
+    /***
+     * Describes the view given by the map
+     * properties for a screen.  A map
+     * without a center is viewed from
+     * tile (0,0).
+     * @param screen The screen.
+     * @return Returns the viewport.
+     */
+    public MaPsciiViewport currentView(AsciiScreen screen){
+        Point center = mapCenter;
+        if(center == null)
+            center = new Point(0, 0);
 
-    public void renderMap(AsciiScreen screen){
-        //initialize the screen and
-        //get the render context
-        screen.initScreen();
+        return new MaPsciiViewport(center, scale, screen);
+    }
+
+    /***
+     * Calculates the window of grid index
+     * positions whose tiles can reach a
+     * screen for a given map center at
+     * the current scale.
+     * @param screen The screen to be
+     *               rendered.
+     * @param center The map center.
+     * @return Returns the window clipped
+     *         to the grid.  The window is
+     *         empty if there is no grid
+     *         or the grid holds no tiles
+     *         to take the metrics from.
+     */
+    public Rectangle visibleWindow(AsciiScreen screen, Point center){
+        RenderContext rc = new RenderContext(grid, new MaPsciiViewport(center, scale, screen));
+        if(rc.grid == null)
+            return new Rectangle(0, 0, 0, 0);
+
+        return calcWindow(rc, rc.mapCenter);
+    }
+
+    /***
+     * Pans the map by the x and y
+     * provided and renders it to a
+     * screen.  If the screen still holds
+     * the frame rendered for the current
+     * map center, its contents are
+     * scrolled by the tile pitch and only
+     * the newly exposed strips and the
+     * seams along the screen edges are
+     * rendered; the result is the same
+     * as a full render.  Otherwise the
+     * map is fully rendered.
+     * @param x The x distance in tiles to pan by.
+     * @param y The y distance in tiles to pan by.
+     * @param screen Screen to render to.
+     */
+    public void panMap(int x, int y, AsciiScreen screen){
+        mapCenter = panMap(currentView(screen), x, y, screen).getCenter();
+    }
+
+    /***
+     * Pans a viewport of the map by the x
+     * and y provided and renders it to a
+     * screen, scrolling the screen if it
+     * still holds the frame rendered for
+     * the viewport.  The map properties
+     * are not read or changed.
+     * @param view The viewport before the pan.
+     * @param x The x distance in tiles to pan by.
+     * @param y The y distance in tiles to pan by.
+     * @param screen Screen to render to.
+     * @return Returns the viewport after
+     *         the pan.
+     */
+    public MaPsciiViewport panMap(MaPsciiViewport view, int x, int y, AsciiScreen screen){
+        RenderContext rc = new RenderContext(grid, view.pannedBy(x, y));
+        beginEvents(rc);
+        Object tag = screen.getRenderTag();
+        boolean current = (tag instanceof FrameTag) &&
+                          ((FrameTag) tag).matches(this, rc.grid, view, screen);
+
+        MaPsciiTile t = (current) ? sampleTile(rc.grid, rc.mapCenter) : null;
+        if(t == null){
+            renderMap(rc.view, screen);
+            return rc.view;
+        }//end if
+
+        //the frame moves by whole tiles, the
+        //strips re-rendered along each edge are
+        //widened by a tile to take in the seams
+        //and the partly visible edge tiles
+        MaPsciiTile.ScaleMetrics sm = t.scaleMetrics(rc.scale);
+        int shiftX = x * sm.getPitchX();
+        int shiftY = y * sm.getPitchY();
+        int marginX = sm.getWidth();
+        int marginY = sm.getHeight();
         int width = screen.getWidth();
         int height = screen.getHeight();
-        rcon.center.x = Math.round(width / 2.0f);
-        rcon.center.y = Math.round(height / 2.0f);
-        rcon.bottom = height - rcon.center.y;
-        rcon.right = width - rcon.center.x;
-        rcon.top = height - rcon.bottom - 1;
-        rcon.left = width - rcon.right - 1;
-
-        if(grid != null) {
-            //create and populate the render list
-            //this is the list of tiles to render
-            //in order, the order is determined in
-            //two passes (null and then non-null
-            //tiles) and in columnar order top-down
-            //left to right
-            int preIndex = 0;
-            ArrayList<RenderTile> renderList = new ArrayList<>();
-            for (int i = 0; i < grid.width(); i++) {
-                MaPsciiColumn col = grid.column(i);
-                for (int j = 0; j < grid.height(); j++) {
-                    MaPsciiTile t = grid.tile(i, j);
-                    Point mapVector = new Point(mapCenter.x - i, mapCenter.y - j);
-                    if (t != null) {
-                        //get the deltaVector and the boxVector
-                        Point dv = t.calcVector(scale, mapVector);
-                        Point bv = t.calcBoxVector(scale, mapVector);
-
-                        int pixelX = dv.x - bv.x;
-                        int pixelY = dv.y - bv.y;
-
-                        boolean xOverlap = (pixelX < rcon.xRange(mapVector));
-                        boolean yOverlap = (pixelY < rcon.yRange(mapVector));
-
-                        //add the tile to the list if it
-                        //can be rendered
-                        if (xOverlap && yOverlap) {
-                            RenderTile rt = new RenderTile(t, mapVector, dv);
-
-                            switch(t.getRenderPass()){
-                                case RP_NULL:
-                                    renderList.add(preIndex++, rt);
-                                    break;
-                                case RP_NO_BORDER:
-                                    renderList.add(preIndex, rt);
-                                    break;
-                                case RP_STANDARD:
-                                    renderList.add(rt);
-                            }//end switch
+
+        boolean xFits = (x == 0) || (Math.abs(shiftX) + 2 * marginX < width);
+        boolean yFits = (y == 0) || (Math.abs(shiftY) + 2 * marginY < height);
+        if(!xFits || !yFits){
+            renderMap(rc.view, screen);
+            return rc.view;
+        }//end if
+
+        //the scroll is drawing, the strips
+        //add their own build and draw times
+        long t0 = System.nanoTime();
+        screen.scroll(-shiftX, -shiftY);
+        rc.drawNanos = System.nanoTime() - t0;
+        Rectangle window = calcWindow(rc, rc.mapCenter);
+
+        rc.list = acquireList();
+        try{
+            if(x != 0){
+                int leftW = marginX + ((x < 0) ? -shiftX : 0);
+                int rightW = marginX + ((x > 0) ? shiftX : 0);
+                patchRegion(rc, screen, window, sm, new Rectangle(0, 0, leftW, height));
+                patchRegion(rc, screen, window, sm, new Rectangle(width - rightW, 0, rightW, height));
+            }//end if
+            if(y != 0){
+                int topH = marginY + ((y < 0) ? -shiftY : 0);
+                int bottomH = marginY + ((y > 0) ? shiftY : 0);
+                patchRegion(rc, screen, window, sm, new Rectangle(0, 0, width, topH));
+                patchRegion(rc, screen, window, sm, new Rectangle(0, height - bottomH, width, bottomH));
+            }//end if
+        }//end try
+        finally{
+            releaseList(rc);
+        }//end finally
+
+        screen.setRenderTag(new FrameTag(this, rc.grid, rc.view, screen));
+        publish(rc);
+        return rc.view;
+    }
+
+    /***
+     * Clears a region of the screen and
+     * renders the tiles overlapping it.
+     * @param rc The render context.
+     * @param screen Screen to render to.
+     * @param window The window of visible
+     *               grid indexes.
+     * @param sm Metrics of the tiles at
+     *           the render scale.
+     * @param clip Region of the screen
+     *             to render.
+     */
+    private void patchRegion(RenderContext rc,
+                             AsciiScreen screen,
+                             Rectangle window,
+                             MaPsciiTile.ScaleMetrics sm,
+                             Rectangle clip){
+        //screen position of the top left
+        //corner of the tile at index (0,0),
+        //every other tile is offset from it
+        //by whole pitches
+        int pitchX = sm.getPitchX();
+        int pitchY = sm.getPitchY();
+        int x0 = rc.left - sm.getLeft() - rc.mapCenter.x * pitchX;
+        int y0 = rc.top - sm.getTop() - rc.mapCenter.y * pitchY;
+
+        //find the tiles which overlap the
+        //region, allowing a tile either side
+        int colFrom = Math.floorDiv(clip.x - sm.getWidth() - x0, pitchX);
+        int colTo = Math.floorDiv(clip.x + clip.width - x0, pitchX) + 1;
+        int rowFrom = Math.floorDiv(clip.y - sm.getHeight() - y0, pitchY);
+        int rowTo = Math.floorDiv(clip.y + clip.height - y0, pitchY) + 1;
+        Rectangle region = new Rectangle(colFrom, rowFrom, colTo - colFrom, rowTo - rowFrom);
+
+        long t0 = System.nanoTime();
+        Rectangle scan = window.intersection(region);
+        buildRenderList(rc, scan);
+        rc.counted.add(scan);
+        long t1 = System.nanoTime();
+        screen.clearRegion(clip.x, clip.y, clip.width, clip.height);
+        drawRenderList(rc, screen, clip, rc.counts);
+        rc.buildNanos += t1 - t0;
+        rc.drawNanos += System.nanoTime() - t1;
+    }
+
+    /***
+     * Takes a render list to use, reusing
+     * a spare one if there is one.
+     * @return Returns the list.
+     */
+    private RenderList acquireList(){
+        RenderList list = spareLists.poll();
+        return (list == null) ? new RenderList() : list;
+    }
+
+    /***
+     * Hands the render list of a context
+     * back to be reused.
+     * @param rc The render context.
+     */
+    private void releaseList(RenderContext rc){
+        spareLists.offer(rc.list);
+        rc.list = null;
+    }
+
+    /***
+     * Creates and populates the render
+     * list.  This is the list of tiles to
+     * render in order, the order is
+     * determined by render pass (null,
+     * then no border, then standard tiles)
+     * and in columnar order top-down left
+     * to right.  Only the window of tiles
+     * around the map center which can
+     * reach the screen is scanned, so the
+     * cost of building the list follows
+     * the screen size and not the size of
+     * the map.  Regions of the window the
+     * grid reports as empty are skipped.
+     * @param rc The render context, its
+     *           list is filled.
+     * @param window The window of grid
+     *               indexes to scan.
+     */
+    private static void buildRenderList(RenderContext rc, Rectangle window){
+        MaPsciiGrid grid = rc.grid;
+        RenderList renderList = rc.list;
+        Point mapCenter = rc.mapCenter;
+        int scale = rc.scale;
+        Point mapVector = new Point();
+        List<Rectangle> regions = grid.regionsIn(window);
+
+        //the metrics of the tile class last
+        //seen, a grid rarely holds more
+        //than one class
+        Class<?> smClass = null;
+        MaPsciiTile.ScaleMetrics sm = null;
+        long scanned = 0;
+        long[] listed = rc.listed;
+
+        renderList.clear();
+        int first = 0;
+        while (first < regions.size()) {
+            //regions starting at the same
+            //column are scanned together so
+            //the tiles stay in columnar order
+            Rectangle band = regions.get(first);
+            int last = first + 1;
+            while (last < regions.size() && regions.get(last).x == band.x) {
+                last++;
+            }//end while
+
+            for (int i = band.x; i < band.x + band.width; i++) {
+                for (int r = first; r < last; r++) {
+                    Rectangle region = regions.get(r);
+                    for (int j = region.y; j < region.y + region.height; j++) {
+                        MaPsciiTile t = grid.flyweight(i, j);
+                        if (t != null) {
+                            mapVector.setLocation(mapCenter.x - i, mapCenter.y - j);
+
+                            //get the deltaVector and the sides
+                            //of the bounding box facing the
+                            //map center
+                            Point dv = t.calcVector(scale, mapVector);
+                            if (t.getClass() != smClass) {
+                                smClass = t.getClass();
+                                sm = t.scaleMetrics(scale);
+                            }//end if
+
+                            int pixelX = dv.x - ((mapVector.x > 0) ? sm.getLeft() : sm.getRight());
+                            int pixelY = dv.y - ((mapVector.y > 0) ? sm.getTop() : sm.getBottom());
+
+                            boolean xOverlap = (pixelX < rc.xRange(mapVector));
+                            boolean yOverlap = (pixelY < rc.yRange(mapVector));
+
+                            //add the tile to the list if it
+                            //can be rendered; a tile a pan
+                            //already counted for another strip
+                            //is listed again but not counted
+                            boolean count = !rc.isCounted(i, j);
+                            if (count)
+                                scanned++;
+                            if (xOverlap && yOverlap) {
+                                int b = renderList.add(t, sm, mapVector, dv);
+                                if (count)
+                                    listed[b]++;
+                            }//end if
                         }//end if
-                    }//end if
-                }//end for j
+                    }//end for j
+                }//end for r
             }//end for i
 
-            //now go through the render list
-            //and render the tiles
-            for (int i = 0; i < renderList.size(); i++) {
-                RenderTile rt = renderList.get(i);
-                renderTile(rt, screen);
-            }//end for i
+            first = last;
+        }//end while
+
+        rc.scanned += scanned;
+    }
+
+    /***
+     * Renders the tiles of the render
+     * list to the screen in order.
+     * @param rc The render context.
+     * @param screen Screen to render to.
+     * @param clip Region of the screen to
+     *             render, nothing outside
+     *             of it is written.
+     * @param counts Counts of the output
+     *               written, added to.
+     */
+    private static void drawRenderList(RenderContext rc, AsciiScreen screen,
+                                       Rectangle clip, Counts counts){
+        RenderList renderList = rc.list;
+        for (int b = 0; b < renderList.buckets.length; b++) {
+            RenderTile[] bucket = renderList.buckets[b];
+            int count = renderList.counts[b];
+
+            //no border tiles were historically
+            //inserted ahead of one another, so
+            //they are drawn last seen first
+            if (b == MaPsciiTile.RenderPass.RP_NO_BORDER.ordinal()) {
+                for (int i = count - 1; i >= 0; i--) {
+                    renderTile(rc, bucket[i], screen, clip, counts);
+                }//end for i
+            }//end if
+            else {
+                for (int i = 0; i < count; i++) {
+                    renderTile(rc, bucket[i], screen, clip, counts);
+                }//end for i
+            }//end else
+        }//end for b
+    }
+
+    /***
+     * Calculates the window of grid
+     * indexes which can be visible on
+     * the screen given a map center and
+     * the current scale and render
+     * context.  The window is derived
+     * from the metrics of a sample tile,
+     * all the tiles in a grid sharing a
+     * shape.
+     * @param rc The render context.
+     * @param center The map center.
+     * @return Returns a Rectangle with the
+     *         first column and row index
+     *         of the window as its location
+     *         and the number of columns and
+     *         rows as its size.  The window
+     *         is clipped to the grid.
+     */
+    private static Rectangle calcWindow(RenderContext rc, Point center){
+        int scale = rc.scale;
+        int w = rc.grid.width();
+        int h = rc.grid.height();
+        MaPsciiTile t = sampleTile(rc.grid, center);
+        if(t == null){
+            return new Rectangle(0, 0, 0, 0);
         }//end if
+
+        MaPsciiTile.ScaleMetrics sm = t.scaleMetrics(scale);
+        if(sm.getPitchX() <= 0 || sm.getPitchY() <= 0){
+            //no usable metrics, scan it all
+            return new Rectangle(0, 0, w, h);
+        }//end if
+
+        //tiles left of and above the center
+        //are measured against the right and
+        //bottom of the screen, tiles right of
+        //and below against the left and top
+        int left = visibleSpan(sm.getPitchX(), sm.getLeft(), rc.right);
+        int right = visibleSpan(sm.getPitchX(), sm.getRight(), rc.left);
+        int top = visibleSpan(sm.getPitchY(), sm.getTop(), rc.bottom);
+        int bottom = visibleSpan(sm.getPitchY(), sm.getBottom(), rc.top);
+
+        int colFrom = Math.max(0, center.x - left);
+        int colTo = Math.min(w - 1, center.x + right);
+        int rowFrom = Math.max(0, center.y - top);
+        int rowTo = Math.min(h - 1, center.y + bottom);
+
+        return new Rectangle(colFrom, rowFrom,
+                             Math.max(0, colTo - colFrom + 1),
+                             Math.max(0, rowTo - rowFrom + 1));
+    }
+
+    /***
+     * Calculates how many tiles away
+     * from the map center a tile can be
+     * while still overlapping the screen.
+     * A tile k tiles away is visible when
+     * k * pitch - box < range.
+     * @param pitch Distance in characters
+     *              between neighbouring
+     *              tile centers.
+     * @param box Distance from the tile
+     *            center to the edge of its
+     *            bounding box facing the
+     *            map center.
+     * @param range Distance from the screen
+     *              center to the screen edge.
+     * @return Returns the largest visible
+     *         distance measured in tiles.
+     */
+    private static int visibleSpan(int pitch, int box, int range){
+        int limit = range + box;
+        if(limit <= 0)
+            return 0;
+        else
+            return (limit - 1) / pitch;
+    }
+
+    /***
+     * Finds a tile to take the shape
+     * metrics of the grid from, looking
+     * at the map center first.
+     * @param grid The grid.
+     * @param center The map center.
+     * @return Returns a tile from the
+     *         grid, or null if the grid
+     *         holds no tiles.
+     */
+    private static MaPsciiTile sampleTile(MaPsciiGrid grid, Point center){
+        int w = grid.width();
+        int h = grid.height();
+        MaPsciiTile t = grid.flyweight(Math.max(0, Math.min(w - 1, center.x)),
+                                       Math.max(0, Math.min(h - 1, center.y)));
+
+        //only the regions of the grid
+        //which may hold tiles are scanned
+        if(t == null){
+            for(Rectangle r : grid.regionsIn(new Rectangle(0, 0, w, h))){
+                for(int i = r.x; t == null && i < r.x + r.width; i++){
+                    for(int j = r.y; t == null && j < r.y + r.height; j++){
+                        t = grid.flyweight(i, j);
+                    }//end for j
+                }//end for i
+
+                if(t != null)
+                    break;
+            }//end for r
+        }//end if
+
+        return t;
     }
 
     /***
      * Renders the specified tile to
      * the screen.
+     * @param rc The render context.
      * @param rt Structure holding the tile
      *           to be rendered.
      * @param screen Screen to render to.
+     * @param clip Region of the screen to
+     *             render to.
+     * @param counts Counts of the output
+     *               written, added to.
      */
-    private void renderTile(RenderTile rt, AsciiScreen screen){
-        //determine the starting lines
-        //for the render - always start
-        //the screen line at zero
-        int tileTop = rt.tile.calcDirectionBox(scale, MaPsciiTile.Direction.TOP);
-        int sIndex = 0;
+    private static void renderTile(RenderContext rc, RenderTile rt, AsciiScreen screen,
+                                   Rectangle clip, Counts counts){
+        MaPsciiEvents.RenderTile event = null;
+        if(rc.traceTiles){
+            event = new MaPsciiEvents.RenderTile();
+            event.begin();
+        }//end if
+
+        MaPsciiTile.ScaleMetrics sm = rt.metrics;
+
+        //determine the tile line which
+        //falls on screen line zero
+        int tileTop = sm.getTop();
         int yOffset;
         if(rt.mapVector.y < 0)
             yOffset = -1 * rt.deltaVector.y;
         else
             yOffset = rt.deltaVector.y;
-        int tIndex = yOffset + tileTop - rcon.top;
-
-        //loop through the lines and
-        //render those that need it
-        boolean started = false;
-        boolean done = false;
-        while(!started || !done){
-            //check if the screen line is valid
-            if(sIndex >= 0 && sIndex < screen.getHeight()){
-                //check if the tile line is valid
-                if(tIndex >= 0 && tIndex < rt.tile.calcHeight(scale)){
-                    started = true;
-
-                    //render this line
-                    renderTileLine(rt, screen, tIndex, sIndex);
-                }//end if
-                else{
-                    if(started)
-                        done = true;
-                }//end else
+        int tIndex = yOffset + tileTop - rc.top;
+
+        //render the lines where the tile
+        //and the clipped screen overlap
+        int first = Math.max(Math.max(clip.y, 0), -tIndex);
+        int last = Math.min(Math.min(clip.y + clip.height, screen.getHeight()),
+                            sm.getHeight() - tIndex);
+        int lines = 0;
+        int chars = 0;
+        for(int sIndex = first; sIndex < last; sIndex++){
+            int written = renderTileLine(rc, rt, screen, tIndex + sIndex, sIndex, clip);
+            if(written > 0){
+                lines++;
+                chars += written;
             }//end if
-            else{
-                if(started)
-                    done = true;
-            }//end else
+        }//end for sIndex
+        counts.lines += lines;
+        counts.chars += chars;
 
-            //increment the lines
-            tIndex++;
-            sIndex++;
-        }//end while
+        if(event != null && event.shouldCommit()){
+            event.tileClass = rt.tile.getClass();
+            event.tileX = rt.tile.getX();
+            event.tileY = rt.tile.getY();
+            event.scale = sm.getScale();
+            event.lines = lines;
+            event.chars = chars;
+            event.commit();
+        }//end if
     }
 
     /***
      * Render the specified line of the
      * tile to the screen.
+     * @param rc The render context.
      * @param rt Structure holding the tile
      *           to be rendered.
      * @param screen Screen to render to.
@@ -348,29 +988,38 @@ public class MaPsciiMap
      *                 tile to be rendered.
      * @param screenLine Line number of the
      *                   screen to render to.
+     * @param clip Region of the screen to
+     *             render to.
+     * @return Returns the number of
+     *         characters written.
      */
-    private void renderTileLine(RenderTile rt,
-                                AsciiScreen screen,
-                                int tileLine,
-                                int screenLine){
+    private static int renderTileLine(RenderContext rc,
+                                       RenderTile rt,
+                                       AsciiScreen screen,
+                                       int tileLine,
+                                       int screenLine,
+                                       Rectangle clip){
+        int scale = rc.scale;
+        MaPsciiTile.ScaleMetrics sm = rt.metrics;
+
         //determine the starting character
         //of the screen and the tile
         //relative to one another
         int sIndex, tIndex, cutOff;
-        cutOff = rt.tile.calcWidth(scale);
+        cutOff = sm.getWidth();
         if(rt.mapVector.x < 0){
             tIndex = 0;
-            sIndex = (screen.getWidth() - rcon.right) +
-                     (rt.deltaVector.x - rt.tile.calcDirectionBox(scale, MaPsciiTile.Direction.LEFT)) - 1;
+            sIndex = (screen.getWidth() - rc.right) +
+                     (rt.deltaVector.x - sm.getLeft()) - 1;
 
-            int tRight = rt.deltaVector.x + rt.tile.calcDirectionBox(scale, MaPsciiTile.Direction.RIGHT);
-            int sRight = rcon.right;
+            int tRight = rt.deltaVector.x + sm.getRight();
+            int sRight = rc.right;
             if(sRight < tRight)
                 cutOff -= (tRight - sRight);
         }//end if
         else{
-            int tl = rt.deltaVector.x + rt.tile.calcDirectionBox(scale, MaPsciiTile.Direction.LEFT);
-            int sl = rcon.left;
+            int tl = rt.deltaVector.x + sm.getLeft();
+            int sl = rc.left;
             if(sl < tl){
                 sIndex = 0;
                 tIndex = tl - sl;
@@ -383,12 +1032,12 @@ public class MaPsciiMap
 
         //first get the text to be
         //rendered from the tile
-        String rawLine = rt.tile.renderLine(scale, tileLine, rt.tile.getRenderPass());
+        char[] rawLine = rt.tile.glyphLine(scale, tileLine, rt.pass);
 
         //calculate the offset for the tile
-        int tileOffset = rt.tile.calcRenderOffset(scale, tileLine);
+        int tileOffset = sm.getRenderOffset(tileLine);
         int tileBegin = Math.max(tIndex, tileOffset);
-        int tileEnd = rt.tile.calcWidth(scale) - tileOffset;
+        int tileEnd = sm.getWidth() - tileOffset;
         tileEnd = Math.min(tileEnd, cutOff);
 
         //calculate the offset for the screen
@@ -398,46 +1047,71 @@ public class MaPsciiMap
         else
             scrOffset = (tileOffset > tIndex) ? tileOffset - tIndex : 0;
 
-        //trim the text down to fit the screen
-        String lineText = rawLine.substring(tileBegin, tileEnd);
-
-        //calculate the begin and end for the screen
+        //trim the run to the clip region
         int scrBegin = sIndex + scrOffset;
-        int scrEnd = scrBegin + lineText.length() - scrOffset;
-        scrEnd = Math.min(scrEnd, screen.getWidth());
-
-        //insert the tile text into the screen line
-        String rndrLine = screen.getScreen().get(screenLine);
-        StringBuilder sb = new StringBuilder(screen.getWidth());
-
-        sb.append(rndrLine.substring(0, scrBegin));
-        sb.append(lineText);
-        sb.append(rndrLine.substring(scrEnd));
+        if(scrBegin < clip.x){
+            tileBegin += clip.x - scrBegin;
+            scrBegin = clip.x;
+        }//end if
+        tileEnd = Math.min(tileEnd, tileBegin + (clip.x + clip.width - scrBegin));
 
-        screen.getScreen().set(screenLine, sb.toString());
+        //copy the visible part of the tile
+        //text straight into the screen line,
+        //the screen clips it to its width
+        return screen.blit(screenLine, scrBegin, rawLine, tileBegin, tileEnd);
     }
 
     /***
      * Private class for easy storage of
      * commonly needed rendering values.
+     * One is created per render and holds
+     * everything the render works with,
+     * so renders share no state.
      */
-    private class RenderContext
+    private static class RenderContext
     {
-        int left;
-        int top;
-        int right;
-        int bottom;
-        Point center;
-
-        RenderContext(int l,
-                      int t,
-                      int r,
-                      int b){
-            left = l;
-            top = t;
-            right = r;
-            bottom = b;
-            center = new Point(0,0);
+        final MaPsciiGrid grid;
+        final MaPsciiViewport view;
+        final Point mapCenter;
+        final int scale;
+        final int left;
+        final int top;
+        final int right;
+        final int bottom;
+        final Point center;
+        RenderList list;
+
+        //flight recorder event of the frame,
+        //tiles are only traced when the
+        //recording asks for them
+        MaPsciiEvents.Render event;
+        boolean traceTiles;
+        boolean parallel;
+
+        //statistics of the render, and the
+        //windows whose tiles are counted
+        //already by the strips of a pan
+        long scanned;
+        final long[] listed = new long[MaPsciiTile.RenderPass.values().length];
+        final Counts counts = new Counts();
+        final ArrayList<Rectangle> counted = new ArrayList<>();
+        long buildNanos;
+        long drawNanos;
+
+        RenderContext(MaPsciiGrid g,
+                      MaPsciiViewport v){
+            grid = g;
+            view = v;
+            mapCenter = v.getCenter();
+            scale = v.getScale();
+
+            int width = v.getWidth();
+            int height = v.getHeight();
+            center = new Point(Math.round(width / 2.0f), Math.round(height / 2.0f));
+            bottom = height - center.y;
+            right = width - center.x;
+            top = height - bottom - 1;
+            left = width - right - 1;
         }
 
         int xRange(Point mapVector){
@@ -446,20 +1120,343 @@ public class MaPsciiMap
         int yRange(Point mapVector){
             return (mapVector.y < 0) ? top : bottom;
         }
+
+        boolean isCounted(int col, int row){
+            for(int k = 0; k < counted.size(); k++){
+                if(counted.get(k).contains(col, row))
+                    return true;
+            }//end for k
+
+            return false;
+        }
     }
 
-    private class RenderTile
+    private static class RenderTile
     {
         MaPsciiTile tile;
-        Point mapVector;
+        MaPsciiTile.RenderPass pass;
+        MaPsciiTile.ScaleMetrics metrics;
+        Point mapVector = new Point();
         Point deltaVector;
 
-        RenderTile(MaPsciiTile t,
-                   Point mv,
-                   Point dv){
+        void set(MaPsciiTile t,
+                 MaPsciiTile.RenderPass p,
+                 MaPsciiTile.ScaleMetrics m,
+                 Point mv,
+                 Point dv){
             tile = t;
-            mapVector = mv;
+            pass = p;
+            metrics = m;
+            mapVector.setLocation(mv);
             deltaVector = dv;
         }
     }
+
+    /***
+     * Private class for rendering a band
+     * of screen lines, splitting it in
+     * two until it is small enough to
+     * render directly.  Tasks are never
+     * serialized.
+     */
+    @SuppressWarnings("serial")
+    private static class BandTask extends RecursiveAction
+    {
+        Counts counts = new Counts();
+        RenderContext rc;
+        AsciiScreen screen;
+        int from;
+        int to;
+        int bandLines;
+
+        BandTask(RenderContext c,
+                 AsciiScreen s,
+                 int f,
+                 int t,
+                 int lines){
+            rc = c;
+            screen = s;
+            from = f;
+            to = t;
+            bandLines = lines;
+        }
+
+        @Override
+        protected void compute(){
+            if(to - from <= bandLines){
+                drawRenderList(rc, screen, new Rectangle(0, from, screen.getWidth(), to - from), counts);
+            }//end if
+            else{
+                int mid = (from + to) >>> 1;
+                BandTask top = new BandTask(rc, screen, from, mid, bandLines);
+                BandTask bottom = new BandTask(rc, screen, mid, to, bandLines);
+                invokeAll(top, bottom);
+                counts.add(top.counts);
+                counts.add(bottom.counts);
+            }//end else
+        }
+    }
+
+    /***
+     * Private class recording what was
+     * last rendered to a screen, so that
+     * a later pan can tell whether the
+     * screen contents can be scrolled.
+     */
+    private static class FrameTag
+    {
+        MaPsciiMap map;
+        MaPsciiGrid grid;
+        long revision;
+        MaPsciiViewport view;
+        char background;
+
+        FrameTag(MaPsciiMap m, MaPsciiGrid g, MaPsciiViewport v, AsciiScreen screen){
+            map = m;
+            grid = g;
+            revision = (grid != null) ? grid.revision() : 0;
+            view = v;
+            background = screen.getBackground();
+        }
+
+        boolean matches(MaPsciiMap m, MaPsciiGrid g, MaPsciiViewport v, AsciiScreen screen){
+            return map == m &&
+                   grid == g &&
+                   grid != null &&
+                   revision == grid.revision() &&
+                   view.equals(v) &&
+                   view.getWidth() == screen.getWidth() &&
+                   view.getHeight() == screen.getHeight() &&
+                   background == screen.getBackground();
+        }
+    }
+
+    /***
+     * Private class holding the tiles
+     * to render in one bucket per render
+     * pass.  Tiles are appended to the
+     * end of their bucket and both the
+     * buckets and the RenderTile objects
+     * in them are reused from frame to
+     * frame.
+     */
+    private static class RenderList
+    {
+        RenderTile[][] buckets;
+        int[] counts;
+
+        RenderList(){
+            int passes = MaPsciiTile.RenderPass.values().length;
+            buckets = new RenderTile[passes][64];
+            counts = new int[passes];
+        }
+
+        void clear(){
+            Arrays.fill(counts, 0);
+        }
+
+        /***
+         * Appends a tile to the bucket of
+         * the pass it is drawn in.
+         * @return Returns the render pass
+         *         ordinal of the bucket.
+         */
+        int add(MaPsciiTile t,
+                MaPsciiTile.ScaleMetrics m,
+                Point mv,
+                Point dv){
+            MaPsciiTile.RenderPass pass = renderPass(t);
+            int b = pass.ordinal();
+
+            RenderTile[] bucket = buckets[b];
+            int n = counts[b];
+            if(n == bucket.length){
+                bucket = Arrays.copyOf(bucket, n * 2);
+                buckets[b] = bucket;
+            }//end if
+
+            RenderTile rt = bucket[n];
+            if(rt == null){
+                rt = new RenderTile();
+                bucket[n] = rt;
+            }//end if
+
+            rt.set(t, pass, m, mv, dv);
+            counts[b] = n + 1;
+            return b;
+        }
+    }
+
+    /***
+     * Finds the render pass a tile is
+     * drawn in.  Tiles which have not been
+     * given a render pass are drawn as
+     * standard tiles: they go in the
+     * standard bucket and their lines are
+     * the standard glyphs.
+     * @param t The tile.
+     * @return Returns the render pass.
+     */
+    private static MaPsciiTile.RenderPass renderPass(MaPsciiTile t){
+        MaPsciiTile.RenderPass pass = t.getRenderPass();
+        return (pass == null) ? MaPsciiTile.RenderPass.RP_STANDARD : pass;
+    }
+
+    /***
+     * Private class counting the output
+     * written by a render, one per band
+     * when bands are drawn in parallel.
+     */
+    private static class Counts
+    {
+        long lines;
+        long chars;
+
+        void add(Counts c){
+            lines += c.lines;
+            chars += c.chars;
+        }
+    }
+
+    /***
+     * The statistics of one rendered or
+     * panned frame.  Times are measured
+     * with System.nanoTime; the flush time
+     * is zero until whoever flushes the
+     * frame records it with withFlush.
+     */
+    public static final class RenderStats
+    {
+        private final MaPsciiViewport view;
+        private final long tilesScanned;
+        private final long[] tilesListed;
+        private final long linesBlitted;
+        private final long charsWritten;
+        private final long buildNanos;
+        private final long drawNanos;
+        private final long flushNanos;
+
+        RenderStats(MaPsciiViewport view, long scanned, long[] listed,
+                    long lines, long chars, long build, long draw,
+                    long flush){
+            this.view = view;
+            tilesScanned = scanned;
+            tilesListed = listed.clone();
+            linesBlitted = lines;
+            charsWritten = chars;
+            buildNanos = build;
+            drawNanos = draw;
+            flushNanos = flush;
+        }
+
+        /***
+         * Copies the statistics with the time
+         * taken to flush the frame.
+         * @param nanos The time taken.
+         * @return Returns the copy.
+         */
+        public RenderStats withFlush(long nanos){
+            return new RenderStats(view, tilesScanned, tilesListed, linesBlitted,
+                                   charsWritten, buildNanos, drawNanos, nanos);
+        }
+
+        /***
+         * The viewport rendered.
+         */
+        public MaPsciiViewport getView(){
+            return view;
+        }
+
+        /***
+         * The tiles looked at in the
+         * window around the map center.
+         */
+        public long getTilesScanned(){
+            return tilesScanned;
+        }
+
+        /***
+         * The tiles scanned which could not
+         * reach the screen.
+         */
+        public long getTilesCulled(){
+            return tilesScanned - getTilesListed();
+        }
+
+        /***
+         * The tiles scanned which can reach
+         * the screen and so were put in the
+         * render list, of all passes.  A tile
+         * may be listed and still write
+         * nothing, being covered or clipped.
+         * The tiles of a pan are counted
+         * once however many of its strips
+         * they fall in.
+         */
+        public long getTilesListed(){
+            long n = 0;
+            for(long d : tilesListed){
+                n += d;
+            }//end for d
+
+            return n;
+        }
+
+        /***
+         * The tiles listed in a render pass;
+         * tiles without a pass are counted
+         * as standard.
+         * @param pass The render pass.
+         */
+        public long getTilesListed(MaPsciiTile.RenderPass pass){
+            return tilesListed[pass.ordinal()];
+        }
+
+        /***
+         * The tile lines copied to the screen.
+         */
+        public long getLinesBlitted(){
+            return linesBlitted;
+        }
+
+        /***
+         * The characters copied to the screen.
+         */
+        public long getCharsWritten(){
+            return charsWritten;
+        }
+
+        /***
+         * The time spent building the
+         * render list.
+         */
+        public long getBuildNanos(){
+            return buildNanos;
+        }
+
+        /***
+         * The time spent drawing the render
+         * list to the screen.
+         */
+        public long getDrawNanos(){
+            return drawNanos;
+        }
+
+        /***
+         * The time spent flushing the frame
+         * out of the screen, zero if not
+         * recorded.
+         */
+        public long getFlushNanos(){
+            return flushNanos;
+        }
+
+        @Override
+        public String toString(){
+            return String.format("%1$s scanned %2$d culled %3$d listed %4$d lines %5$d chars %6$d build %7$.3f ms draw %8$.3f ms flush %9$.3f ms",
+                                 view, tilesScanned, getTilesCulled(), getTilesListed(),
+                                 linesBlitted, charsWritten, buildNanos / 1e6, drawNanos / 1e6,
+                                 flushNanos / 1e6);
+        }
+    }
 }
@@ -0,0 +1,391 @@
+import java.awt.*;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.UUID;
+
+/***
+ * Writes map grids in the binary .map
+ * format read by MaPsciiMappedGrid, and
+ * converts json files and database maps
+ * to it.
+ * The file is little endian and laid
+ * out as:
+ *   header      - HEADER_SIZE bytes of
+ *                 sizes and offsets
+ *   dictionary  - the map GUID and name
+ *                 then the tile class
+ *                 names, type n being
+ *                 the n-th class
+ *   directory   - one DIR_ENTRY_SIZE
+ *                 entry per chunk,
+ *                 sorted by chunk
+ *                 column then row
+ *   records     - CHUNK_SIZE * CHUNK_SIZE
+ *                 fixed width tile
+ *                 records per chunk, laid
+ *                 out column by column
+ *   GUID pool   - GUIDs which are not in
+ *                 the packed form
+ * Only chunks holding tiles are written,
+ * so sparse worlds stay small.
+ */
+public class MaPsciiMapFile
+{
+    //header layout
+    static final int MAGIC = 0x4D505343;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 128;
+    static final int HO_MAGIC = 0;
+    static final int HO_VERSION = 4;
+    static final int HO_CHUNK_SIZE = 8;
+    static final int HO_RECORD_SIZE = 12;
+    static final int HO_MAP_X = 16;
+    static final int HO_MAP_Y = 20;
+    static final int HO_WIDTH = 24;
+    static final int HO_HEIGHT = 28;
+    static final int HO_CLASS_COUNT = 32;
+    static final int HO_CHUNK_COUNT = 36;
+    static final int HO_DICT = 40;
+    static final int HO_DIR = 48;
+    static final int HO_RECORDS = 56;
+    static final int HO_POOL = 64;
+
+    //chunks are the same size as those
+    //of MaPsciiChunkedGrid
+    static final int CHUNK_SIZE = MaPsciiChunkedGrid.CHUNK_SIZE;
+    static final int CHUNK_SHIFT = 6;
+    static final int CHUNK_CELLS = CHUNK_SIZE * CHUNK_SIZE;
+
+    //directory entry layout
+    static final int DIR_ENTRY_SIZE = 16;
+    static final int DO_CX = 0;
+    static final int DO_CY = 4;
+    static final int DO_OFFSET = 8;
+
+    //tile record layout
+    static final int RECORD_SIZE = 32;
+    static final int CHUNK_BYTES = CHUNK_CELLS * RECORD_SIZE;
+    static final int RO_TYPE = 0;
+    static final int RO_PASS = 1;
+    static final int RO_FLAGS = 2;
+    static final int RO_X = 4;
+    static final int RO_Y = 8;
+    static final int RO_GUID_HI = 16;
+    static final int RO_GUID_LO = 24;
+
+    //how the GUID of a record is held
+    static final int GUID_NONE = 0;
+    static final int GUID_PACKED = 1;
+    static final int GUID_POOL = 2;
+
+    /***
+     * Constructor.  All methods are static.
+     */
+    private MaPsciiMapFile(){}
+
+    /***
+     * Converts a json map file or a map
+     * database to a .map file.
+     * Usage: MaPsciiMapFile source target [mapID]
+     * where a source ending in .db is read
+     * as a database holding the map ID.
+     * @param args The arguments.
+     */
+    public static void main(String[] args){
+        if(args.length < 2){
+            System.out.println("Usage: MaPsciiMapFile <source.json|source.db> <target.map> [mapID]");
+            return;
+        }//end if
+
+        try{
+            File target = new File(args[1]);
+            if(args[0].endsWith(".db")){
+                if(args.length < 3){
+                    System.out.println("A map ID is required to convert a database.");
+                    return;
+                }//end if
+
+                MaPsciiDBM dbm = new MaPsciiDBM("jdbc:sqlite:" + args[0], null);
+                if(dbm.connect()){
+                    fromDatabase(dbm, args[2], target);
+                    dbm.disconnect();
+                }//end if
+            }//end if
+            else{
+                fromJson(new File(args[0]), target);
+            }//end else
+        }//end try
+        catch(IOException ioe){
+            System.out.println(ioe.getMessage());
+        }//end catch ioe
+    }
+
+    /***
+     * Converts a json map file, plain or
+     * gzip compressed, to a .map file.
+     * @param source The json file.
+     * @param target The .map file to write.
+     * @throws IOException
+     */
+    public static void fromJson(File source, File target)
+            throws IOException{
+        MaPsciiChunkedGrid grid = new MaPsciiChunkedGrid();
+        MaPsciiJsonFile.read(source, grid);
+        write(grid, target);
+    }
+
+    /***
+     * Converts a map held in a database
+     * to a .map file.
+     * @param dbm The connected data module.
+     * @param mapGuid The map ID.
+     * @param target The .map file to write.
+     * @throws IOException
+     */
+    public static void fromDatabase(MaPsciiDBM dbm, String mapGuid, File target)
+            throws IOException{
+        MaPsciiChunkedGrid grid = new MaPsciiChunkedGrid();
+        grid.setGuid(mapGuid);
+        dbm.loadMap(grid);
+        write(grid, target);
+    }
+
+    /***
+     * Writes a grid to a .map file.
+     * @param grid The grid to write.
+     * @param file The file to write.
+     * @throws IOException
+     */
+    public static void write(MaPsciiGrid grid, File file)
+            throws IOException{
+        int w = grid.width();
+        int h = grid.height();
+        int mapX = (w > 0) ? grid.mapX(0) : 0;
+        int mapY = grid.mapY(0);
+
+        //find the chunks holding tiles
+        //and the classes of the tiles
+        MaPsciiLongMap<Boolean> found = new MaPsciiLongMap<>();
+        HashMap<Class<?>, Integer> types = new HashMap<>();
+        ArrayList<String> classNames = new ArrayList<>();
+        for(Rectangle r : grid.regionsIn(new Rectangle(0, 0, w, h))){
+            for(int i = r.x; i < r.x + r.width; i++){
+                for(int j = r.y; j < r.y + r.height; j++){
+                    MaPsciiTile t = grid.flyweight(i, j);
+                    if(t == null)
+                        continue;
+
+                    found.put(chunkKey((mapX + i) >> CHUNK_SHIFT, (mapY + j) >> CHUNK_SHIFT), Boolean.TRUE);
+                    if(types.get(t.getClass()) == null){
+                        classNames.add(t.getClass().getName());
+                        types.put(t.getClass(), classNames.size());
+                    }//end if
+                }//end for j
+            }//end for i
+        }//end for r
+        if(classNames.size() > MaPsciiTileTypes.MAX_TYPES)
+            throw new IOException("MaPsciiMapFile.write supports at most " + MaPsciiTileTypes.MAX_TYPES + " tile classes.");
+
+        long[] chunks = found.keys();
+        Arrays.sort(chunks);
+
+        //the dictionary
+        ByteArrayOutputStream dict = new ByteArrayOutputStream();
+        writeString(dict, grid.getGuid());
+        writeString(dict, grid.getName());
+        for(String name : classNames){
+            writeString(dict, name);
+        }//end for name
+
+        long dictOffset = HEADER_SIZE;
+        long dirOffset = dictOffset + dict.size();
+        long recordsOffset = align(dirOffset + (long) chunks.length * DIR_ENTRY_SIZE);
+        long poolOffset = recordsOffset + (long) chunks.length * CHUNK_BYTES;
+
+        try(FileChannel ch = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)){
+            ch.position(dictOffset);
+            writeFully(ch, ByteBuffer.wrap(dict.toByteArray()));
+
+            ByteBuffer dir = order(ByteBuffer.allocate(chunks.length * DIR_ENTRY_SIZE));
+            for(int k = 0; k < chunks.length; k++){
+                dir.putInt(chunkCol(chunks[k]));
+                dir.putInt(chunkRow(chunks[k]));
+                dir.putLong(recordsOffset + (long) k * CHUNK_BYTES);
+            }//end for k
+            dir.flip();
+            writeFully(ch, dir);
+
+            //the records, a chunk at a time
+            ByteArrayOutputStream pool = new ByteArrayOutputStream();
+            ByteBuffer buf = order(ByteBuffer.allocateDirect(CHUNK_BYTES));
+            ch.position(recordsOffset);
+            for(long key : chunks){
+                int firstCol = (chunkCol(key) << CHUNK_SHIFT) - mapX;
+                int firstRow = (chunkRow(key) << CHUNK_SHIFT) - mapY;
+
+                buf.clear();
+                for(int i = 0; i < CHUNK_SIZE; i++){
+                    for(int j = 0; j < CHUNK_SIZE; j++){
+                        int col = firstCol + i;
+                        int row = firstRow + j;
+                        int at = ((i << CHUNK_SHIFT) | j) * RECORD_SIZE;
+
+                        MaPsciiTile t = (col >= 0 && col < w && row >= 0 && row < h) ?
+                                        grid.tile(col, row) : null;
+                        if(t == null){
+                            buf.put(at + RO_TYPE, MaPsciiTileTypes.NO_TILE);
+                            buf.put(at + RO_PASS, MaPsciiTileTypes.NO_PASS);
+                            buf.put(at + RO_FLAGS, (byte) GUID_NONE);
+                            buf.putInt(at + RO_X, 0);
+                            buf.putInt(at + RO_Y, 0);
+                            buf.putLong(at + RO_GUID_HI, 0);
+                            buf.putLong(at + RO_GUID_LO, 0);
+                            continue;
+                        }//end if
+
+                        buf.put(at + RO_TYPE, (byte) (int) types.get(t.getClass()));
+                        buf.put(at + RO_PASS, MaPsciiTileTypes.passCode(t.getRenderPass()));
+                        buf.putInt(at + RO_X, t.getX());
+                        buf.putInt(at + RO_Y, t.getY());
+
+                        String guid = t.getGuid();
+                        UUID packed = MaPsciiTileTypes.packGuid(guid);
+                        if(guid == null){
+                            buf.put(at + RO_FLAGS, (byte) GUID_NONE);
+                            buf.putLong(at + RO_GUID_HI, 0);
+                            buf.putLong(at + RO_GUID_LO, 0);
+                        }//end if
+                        else if(packed != null){
+                            buf.put(at + RO_FLAGS, (byte) GUID_PACKED);
+                            buf.putLong(at + RO_GUID_HI, packed.getMostSignificantBits());
+                            buf.putLong(at + RO_GUID_LO, packed.getLeastSignificantBits());
+                        }//end else if
+                        else{
+                            buf.put(at + RO_FLAGS, (byte) GUID_POOL);
+                            buf.putLong(at + RO_GUID_HI, 0);
+                            buf.putLong(at + RO_GUID_LO, pool.size());
+                            writeString(pool, guid);
+                        }//end else
+                    }//end for j
+                }//end for i
+
+                buf.position(CHUNK_BYTES);
+                buf.flip();
+                writeFully(ch, buf);
+            }//end for key
+
+            writeFully(ch, ByteBuffer.wrap(pool.toByteArray()));
+
+            //the header last, once every
+            //section has been written
+            ByteBuffer head = order(ByteBuffer.allocate(HEADER_SIZE));
+            head.putInt(HO_MAGIC, MAGIC);
+            head.putInt(HO_VERSION, VERSION);
+            head.putInt(HO_CHUNK_SIZE, CHUNK_SIZE);
+            head.putInt(HO_RECORD_SIZE, RECORD_SIZE);
+            head.putInt(HO_MAP_X, mapX);
+            head.putInt(HO_MAP_Y, mapY);
+            head.putInt(HO_WIDTH, w);
+            head.putInt(HO_HEIGHT, h);
+            head.putInt(HO_CLASS_COUNT, classNames.size());
+            head.putInt(HO_CHUNK_COUNT, chunks.length);
+            head.putLong(HO_DICT, dictOffset);
+            head.putLong(HO_DIR, dirOffset);
+            head.putLong(HO_RECORDS, recordsOffset);
+            head.putLong(HO_POOL, poolOffset);
+            ch.position(0);
+            writeFully(ch, head);
+        }//end try
+    }
+
+    /***
+     * Reads a string written by
+     * writeString.
+     * @param buf The buffer.
+     * @param at Offset of the string.
+     * @param text Receives the string at
+     *             index 0.
+     * @return Returns the offset after
+     *         the string.
+     */
+    static int readString(ByteBuffer buf, int at, String[] text){
+        int len = buf.getInt(at);
+        at += 4;
+        if(len < 0){
+            text[0] = null;
+            return at;
+        }//end if
+
+        byte[] b = new byte[len];
+        for(int k = 0; k < len; k++){
+            b[k] = buf.get(at + k);
+        }//end for k
+        text[0] = new String(b, StandardCharsets.UTF_8);
+
+        return at + len;
+    }
+
+    /***
+     * Writes a string as its UTF-8 length,
+     * -1 for null, followed by the bytes.
+     * @param out The stream to write to.
+     * @param text The string.
+     */
+    private static void writeString(ByteArrayOutputStream out, String text){
+        byte[] b = (text == null) ? null : text.getBytes(StandardCharsets.UTF_8);
+        int len = (b == null) ? -1 : b.length;
+        out.write(len);
+        out.write(len >> 8);
+        out.write(len >> 16);
+        out.write(len >> 24);
+        if(b != null)
+            out.write(b, 0, b.length);
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf)
+            throws IOException{
+        while(buf.hasRemaining()){
+            ch.write(buf);
+        }//end while
+    }
+
+    private static ByteBuffer order(ByteBuffer buf){
+        return buf.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /***
+     * Rounds an offset up to a whole
+     * record so records stay aligned.
+     * @param offset The offset.
+     * @return Returns the aligned offset.
+     */
+    private static long align(long offset){
+        return (offset + RECORD_SIZE - 1) / RECORD_SIZE * RECORD_SIZE;
+    }
+
+    /***
+     * Packs chunk coordinates so that
+     * sorting the packed values orders
+     * the chunks by column then row.
+     */
+    static long chunkKey(int cx, int cy){
+        return ((long) cx << 32) | ((cy ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+    }
+    private static int chunkCol(long key){
+        return (int) (key >> 32);
+    }
+    private static int chunkRow(long key){
+        return (int) key ^ Integer.MIN_VALUE;
+    }
+}
@@ -0,0 +1,418 @@
+import java.awt.*;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/***
+ * Loads a database map into a chunked
+ * grid a window at a time.  Only the
+ * chunks around the map center are
+ * read; the chunks on screen are loaded
+ * before a render, the chunks within a
+ * margin around them are fetched in the
+ * background, and chunks well outside
+ * the margin are dropped so the memory
+ * used stays bounded however far the
+ * map is panned.
+ * All database work runs on one loader
+ * thread.  Background loads go into a
+ * staging grid and are only merged into
+ * the map grid by update, so the grid
+ * is only changed on the thread which
+ * renders it.
+ */
+public class MaPsciiMapLoader
+{
+    private static final int CHUNK_SIZE = MaPsciiChunkedGrid.CHUNK_SIZE;
+
+    /***
+     * Property: Margin
+     * The number of tiles around the
+     * visible window to fetch ahead.
+     * Chunks further than twice the
+     * margin from the window are dropped.
+     */
+    private int margin = CHUNK_SIZE;
+    public int getMargin(){
+        return margin;
+    }
+    public void setMargin(int value){
+        margin = Math.max(0, value);
+    }
+
+    /***
+     * Property: OnLoaded
+     * Called on the loader thread when a
+     * background load has finished, to
+     * have the map updated and rendered
+     * again.  May be null.
+     */
+    private Runnable onLoaded;
+    public Runnable getOnLoaded(){
+        return onLoaded;
+    }
+    public void setOnLoaded(Runnable value){
+        onLoaded = value;
+    }
+
+    private MaPsciiDBM dbm;
+    private MaPsciiChunkedGrid grid;
+    private IMaPsciiExceptionHandler handler;
+
+    private ExecutorService executor;
+
+    /***
+     * The chunks loaded (true) or being
+     * loaded in the background (false),
+     * keyed by chunk column and row.
+     */
+    private MaPsciiLongMap<Boolean> requested = new MaPsciiLongMap<>();
+
+    /***
+     * Background loads which have
+     * finished, waiting to be merged
+     * into the map grid.
+     */
+    private ConcurrentLinkedQueue<Batch> ready = new ConcurrentLinkedQueue<>();
+
+    /***
+     * Constructor.
+     * @param dbm The connected data module
+     *            to load from.  It is used
+     *            only by the loader thread
+     *            until the loader is closed.
+     * @param grid The grid to load into.
+     *             Its GUID selects the map.
+     * @param excHandler Handler for errors
+     *                   in background loads.
+     */
+    public MaPsciiMapLoader(MaPsciiDBM dbm,
+                            MaPsciiChunkedGrid grid,
+                            IMaPsciiExceptionHandler excHandler){
+        this.dbm = dbm;
+        this.grid = grid;
+        handler = excHandler;
+
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "MaPscii map loader");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /***
+     * Sizes the grid to the map without
+     * loading any tiles.
+     * @return Returns the extent of the
+     *         map in MAP_X and MAP_Y
+     *         values.
+     */
+    public Rectangle open(){
+        requested.clear();
+        ready.clear();
+
+        Rectangle bounds = call(() -> dbm.openMap(grid));
+        return (bounds == null) ? new Rectangle(0, 0, 0, 0) : bounds;
+    }
+
+    /***
+     * Brings the grid up to date for a
+     * map center.  Finished background
+     * loads are merged, any chunks the
+     * screen needs are loaded before
+     * returning, the margin around them
+     * is queued for loading and far away
+     * chunks are dropped.  This must be
+     * called on the thread rendering the
+     * grid, before the render.
+     * @param map The map being rendered.
+     * @param screen The screen to render to.
+     * @param center The map center about
+     *               to be rendered.
+     * @return Returns true if the tiles
+     *         in the grid changed.
+     */
+    public boolean update(MaPsciiMap map, AsciiScreen screen, Point center){
+        boolean changed = mergeReady();
+
+        //until some tiles are in the grid
+        //there are no metrics to size the
+        //window with, so the chunk at the
+        //center is loaded first
+        Rectangle visible = map.visibleWindow(screen, center);
+        if(visible.isEmpty()){
+            changed |= loadNow(missing(new Rectangle(center.x, center.y, 1, 1)));
+            visible = map.visibleWindow(screen, center);
+        }//end if
+        if(visible.isEmpty())
+            visible = new Rectangle(center.x, center.y, 1, 1);
+
+        //chunks on screen still being fetched
+        //in the background are waited for
+        if(pending(visible)){
+            call(() -> null);
+            changed |= mergeReady();
+        }//end if
+        changed |= loadNow(missing(visible));
+
+        //fetch the margin in the background
+        long[] ahead = missing(grow(visible, margin));
+        if(ahead.length > 0){
+            Batch batch = new Batch(grid.emptyCopy(), ahead);
+            executor.execute(() -> {
+                load(batch.grid, batch.keys);
+                ready.add(batch);
+                if(onLoaded != null)
+                    onLoaded.run();
+            });
+        }//end if
+
+        changed |= evict(grow(visible, margin * 2));
+
+        return changed;
+    }
+
+    /***
+     * Saves the changes made to the grid
+     * to the database, waiting for the
+     * save to finish.  This must be called
+     * on the thread rendering the grid.
+     * @return Returns True if the map was
+     *         saved; False if not.
+     */
+    public boolean save(){
+        Boolean saved = call(() -> dbm.saveMap(grid));
+        return Boolean.TRUE.equals(saved);
+    }
+
+    /***
+     * Stops the loader thread and
+     * disconnects the data module.
+     */
+    public void close(){
+        executor.execute(() -> dbm.disconnect());
+        executor.shutdown();
+    }
+
+    /***
+     * Merges the finished background
+     * loads into the grid.
+     * @return Returns true if any chunks
+     *         were added.
+     */
+    private boolean mergeReady(){
+        boolean changed = false;
+        Batch batch;
+        while((batch = ready.poll()) != null){
+            changed |= merge(batch.grid, batch.keys);
+        }//end while
+
+        return changed;
+    }
+
+    /***
+     * Merges loaded chunks into the grid
+     * and marks them as loaded, unless
+     * they were dropped while loading;
+     * those are discarded with the
+     * staging grid.
+     * @param staged The staging grid.
+     * @param keys The chunks loaded.
+     * @return Returns true if any chunks
+     *         were added.
+     */
+    private boolean merge(MaPsciiChunkedGrid staged, long[] keys){
+        long[] kept = new long[keys.length];
+        int count = 0;
+        for(long key : keys){
+            if(requested.get(key) != null){
+                requested.put(key, Boolean.TRUE);
+                kept[count++] = key;
+            }//end if
+        }//end for key
+
+        return grid.mergeChunks(staged, Arrays.copyOf(kept, count)) > 0;
+    }
+
+    /***
+     * Loads chunks on the loader thread,
+     * waiting for the load to finish.
+     * @param keys Chunks to load.
+     * @return Returns true if any chunks
+     *         were added.
+     */
+    private boolean loadNow(long[] keys){
+        if(keys.length == 0)
+            return false;
+
+        MaPsciiChunkedGrid staged = grid.emptyCopy();
+        call(() -> {
+            load(staged, keys);
+            return staged;
+        });
+
+        return merge(staged, keys);
+    }
+
+    /***
+     * Loads chunks into a staging grid.
+     * Runs on the loader thread.
+     * @param staged The staging grid.
+     * @param keys Chunks to load.
+     */
+    private void load(MaPsciiChunkedGrid staged, long[] keys){
+        for(long key : keys){
+            Rectangle range = new Rectangle(MaPsciiChunkedGrid.keyColumn(key) * CHUNK_SIZE,
+                                            MaPsciiChunkedGrid.keyRow(key) * CHUNK_SIZE,
+                                            CHUNK_SIZE, CHUNK_SIZE);
+            dbm.loadTiles(staged, range);
+        }//end for key
+    }
+
+    /***
+     * Finds the chunks overlapping a
+     * window which have not been loaded
+     * and marks them as being loaded.
+     * @param window Index positions.
+     * @return Returns the chunk keys.
+     */
+    private long[] missing(Rectangle window){
+        long[] keys = chunksIn(window);
+        int count = 0;
+        for(long key : keys){
+            if(requested.get(key) == null){
+                requested.put(key, Boolean.FALSE);
+                keys[count++] = key;
+            }//end if
+        }//end for key
+
+        return Arrays.copyOf(keys, count);
+    }
+
+    /***
+     * Checks whether any chunks overlapping
+     * a window are still being loaded.
+     * @param window Index positions.
+     * @return Returns true if any are.
+     */
+    private boolean pending(Rectangle window){
+        for(long key : chunksIn(window)){
+            if(Boolean.FALSE.equals(requested.get(key)))
+                return true;
+        }//end for key
+
+        return false;
+    }
+
+    /***
+     * Lists the chunks overlapping a
+     * window of the grid.
+     * @param window Index positions.
+     * @return Returns the chunk keys.
+     */
+    private long[] chunksIn(Rectangle window){
+        Rectangle r = window.intersection(new Rectangle(0, 0, grid.width(), grid.height()));
+        if(r.isEmpty())
+            return new long[0];
+
+        int firstCx = Math.floorDiv(grid.baseColumn() + r.x, CHUNK_SIZE);
+        int lastCx = Math.floorDiv(grid.baseColumn() + r.x + r.width - 1, CHUNK_SIZE);
+        int firstCy = Math.floorDiv(grid.baseRow() + r.y, CHUNK_SIZE);
+        int lastCy = Math.floorDiv(grid.baseRow() + r.y + r.height - 1, CHUNK_SIZE);
+
+        long[] keys = new long[(lastCx - firstCx + 1) * (lastCy - firstCy + 1)];
+        int count = 0;
+        for(int cx = firstCx; cx <= lastCx; cx++){
+            for(int cy = firstCy; cy <= lastCy; cy++){
+                keys[count++] = MaPsciiChunkedGrid.key(cx, cy);
+            }//end for cy
+        }//end for cx
+
+        return keys;
+    }
+
+    /***
+     * Drops the chunks which do not
+     * overlap a window.
+     * @param keep Index positions whose
+     *             chunks are kept.
+     * @return Returns true if any chunks
+     *         were dropped.
+     */
+    private boolean evict(Rectangle keep){
+        for(long key : requested.keys()){
+            Rectangle r = new Rectangle(MaPsciiChunkedGrid.keyColumn(key) * CHUNK_SIZE - grid.baseColumn(),
+                                        MaPsciiChunkedGrid.keyRow(key) * CHUNK_SIZE - grid.baseRow(),
+                                        CHUNK_SIZE, CHUNK_SIZE);
+            if(!r.intersects(keep))
+                requested.remove(key);
+        }//end for key
+
+        return grid.retainChunks(keep) > 0;
+    }
+
+    /***
+     * Runs a task on the loader thread
+     * and waits for its result.
+     * @param task The task.
+     * @param <T> The type of the result.
+     * @return Returns the result, or null
+     *         if the task failed.
+     */
+    private <T> T call(Callable<T> task){
+        Future<T> f = executor.submit(task);
+        try{
+            return f.get();
+        }//end try
+        catch(InterruptedException ie){
+            Thread.currentThread().interrupt();
+            exception(ie);
+        }//end catch ie
+        catch(ExecutionException ee){
+            exception(ee);
+        }//end catch ee
+
+        return null;
+    }
+
+    /***
+     * Handles exceptions which occur.
+     * @param exc The exception.
+     */
+    private void exception(Exception exc){
+        if(handler != null)
+            handler.handleException(exc);
+        else
+            System.out.println(exc.getMessage());
+    }
+
+    /***
+     * Grows a window by a margin on
+     * every side.
+     * @param r The window.
+     * @param m The margin.
+     * @return Returns the grown window.
+     */
+    private static Rectangle grow(Rectangle r, int m){
+        return new Rectangle(r.x - m, r.y - m, r.width + 2 * m, r.height + 2 * m);
+    }
+
+    /***
+     * A background load: the staging grid
+     * and the chunks loaded into it.
+     */
+    private static class Batch
+    {
+        final MaPsciiChunkedGrid grid;
+        final long[] keys;
+
+        Batch(MaPsciiChunkedGrid grid, long[] keys){
+            this.grid = grid;
+            this.keys = keys;
+        }
+    }
+}
@@ -0,0 +1,400 @@
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/***
+ * Read only map grid over a .map file
+ * written by MaPsciiMapFile.  The file is
+ * memory mapped and nothing is read up
+ * front beyond the header and the tile
+ * class names, so opening a map costs
+ * the same however large it is, and a
+ * render only touches the pages holding
+ * the chunks in view.  Chunks are found
+ * by a binary search of the chunk
+ * directory in the file.
+ * Tiles cannot be changed; the methods
+ * which would change them throw
+ * UnsupportedOperationException.
+ */
+public class MaPsciiMappedGrid extends MaPsciiGrid
+{
+    private static final int CHUNK_SHIFT = MaPsciiMapFile.CHUNK_SHIFT;
+    private static final int CHUNK_MASK = MaPsciiMapFile.CHUNK_SIZE - 1;
+    private static final int RECORD_SIZE = MaPsciiMapFile.RECORD_SIZE;
+
+    private MappedByteBuffer buf;
+
+    /***
+     * Extent of the grid, and the map
+     * column and row of index (0,0).
+     */
+    private int cols;
+    private int rows;
+    private int baseCol;
+    private int baseRow;
+
+    private int chunkCount;
+    private int dirOffset;
+    private int poolOffset;
+
+    /***
+     * The tile classes, type n of the
+     * file being type n here.
+     */
+    private MaPsciiTileTypes tileTypes = new MaPsciiTileTypes();
+
+    /***
+     * The chunk found by the last lookup.
+     * Renders read a chunk at a time, so
+     * most lookups hit it.  The object is
+     * immutable, so threads rendering in
+     * parallel can share it.
+     */
+    private ChunkRef lastChunk = new ChunkRef(Integer.MIN_VALUE, Integer.MIN_VALUE, -1);
+
+    /***
+     * Constructor.  Opens a .map file.
+     * @param file The file to open.
+     * @throws IOException
+     */
+    public MaPsciiMappedGrid(File file)
+            throws IOException{
+        super();
+
+        try(FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            long size = ch.size();
+            if(size > Integer.MAX_VALUE)
+                throw new IOException("MaPsciiMappedGrid supports files of at most 2GB.");
+            if(size < MaPsciiMapFile.HEADER_SIZE)
+                throw new IOException("MaPsciiMappedGrid requires a .map file.");
+
+            buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+        }//end try
+
+        if(buf.getInt(MaPsciiMapFile.HO_MAGIC) != MaPsciiMapFile.MAGIC)
+            throw new IOException("MaPsciiMappedGrid requires a .map file.");
+        if(buf.getInt(MaPsciiMapFile.HO_VERSION) > MaPsciiMapFile.VERSION)
+            throw new IOException("MaPsciiMappedGrid does not support version " + buf.getInt(MaPsciiMapFile.HO_VERSION) + ".");
+        if(buf.getInt(MaPsciiMapFile.HO_CHUNK_SIZE) != MaPsciiMapFile.CHUNK_SIZE ||
+           buf.getInt(MaPsciiMapFile.HO_RECORD_SIZE) != RECORD_SIZE)
+            throw new IOException("MaPsciiMappedGrid does not support the chunk layout of the file.");
+
+        baseCol = buf.getInt(MaPsciiMapFile.HO_MAP_X);
+        baseRow = buf.getInt(MaPsciiMapFile.HO_MAP_Y);
+        cols = buf.getInt(MaPsciiMapFile.HO_WIDTH);
+        rows = buf.getInt(MaPsciiMapFile.HO_HEIGHT);
+        chunkCount = buf.getInt(MaPsciiMapFile.HO_CHUNK_COUNT);
+        dirOffset = (int) buf.getLong(MaPsciiMapFile.HO_DIR);
+        poolOffset = (int) buf.getLong(MaPsciiMapFile.HO_POOL);
+
+        //the GUID, name and classes
+        String[] text = new String[1];
+        int at = (int) buf.getLong(MaPsciiMapFile.HO_DICT);
+        at = MaPsciiMapFile.readString(buf, at, text);
+        setGuid(text[0]);
+        at = MaPsciiMapFile.readString(buf, at, text);
+        setName(text[0]);
+
+        int classCount = buf.getInt(MaPsciiMapFile.HO_CLASS_COUNT);
+        for(int k = 0; k < classCount; k++){
+            at = MaPsciiMapFile.readString(buf, at, text);
+            try{
+                //the class is checked before it
+                //is initialized
+                Class<?> c = Class.forName(text[0], false, MaPsciiTile.class.getClassLoader());
+                tileTypes.typeId(c.asSubclass(MaPsciiTile.class));
+            }//end try
+            catch(ClassNotFoundException | ClassCastException cnfe){
+                throw new IOException("MaPsciiMappedGrid found an unknown tile class " + text[0] + ".");
+            }//end catch cnfe
+        }//end for k
+
+        markSaved();
+    }
+
+    /***
+     * Retrieves the number of chunks in
+     * the file.
+     * @return Returns the chunk count.
+     */
+    public int chunkCount(){
+        return chunkCount;
+    }
+
+    @Override
+    public List<MaPsciiColumn> getColumns(){
+        //built on demand
+        ArrayList<MaPsciiColumn> list = new ArrayList<>(cols);
+        for(int i = 0; i < cols; i++){
+            list.add(column(i));
+        }//end for i
+
+        return list;
+    }
+
+    @Override
+    public int width(){
+        return cols;
+    }
+
+    @Override
+    public int height(){
+        return rows;
+    }
+
+    @Override
+    public MaPsciiColumn column(int index){
+        if(index < 0 || index >= cols){
+            return null;
+        }//end if
+        else{
+            MaPsciiColumn col = new MaPsciiColumn(baseCol + index);
+            for(int j = 0; j < rows; j++){
+                col.getTiles().add(tile(index, j));
+            }//end for j
+
+            return col;
+        }//end else
+    }
+
+    @Override
+    public MaPsciiTile tile(int col, int row){
+        int at = record(col, row);
+        if(at < 0)
+            return null;
+
+        int type = buf.get(at + MaPsciiMapFile.RO_TYPE) & 0xFF;
+        if(type == MaPsciiTileTypes.NO_TILE)
+            return null;
+
+        String guid;
+        switch(buf.get(at + MaPsciiMapFile.RO_FLAGS)){
+            case MaPsciiMapFile.GUID_PACKED:
+                guid = MaPsciiTileTypes.formatGuid(buf.getLong(at + MaPsciiMapFile.RO_GUID_HI),
+                                                   buf.getLong(at + MaPsciiMapFile.RO_GUID_LO));
+                break;
+            case MaPsciiMapFile.GUID_POOL:
+                String[] text = new String[1];
+                MaPsciiMapFile.readString(buf, poolOffset + (int) buf.getLong(at + MaPsciiMapFile.RO_GUID_LO), text);
+                guid = text[0];
+                break;
+            default:
+                guid = null;
+                break;
+        }//end switch
+
+        return tileTypes.materialize(type,
+                                     buf.get(at + MaPsciiMapFile.RO_PASS),
+                                     buf.getInt(at + MaPsciiMapFile.RO_X),
+                                     buf.getInt(at + MaPsciiMapFile.RO_Y),
+                                     guid);
+    }
+
+    @Override
+    public MaPsciiTile flyweight(int col, int row){
+        int at = record(col, row);
+        if(at < 0)
+            return null;
+        else
+            return tileTypes.flyweight(buf.get(at + MaPsciiMapFile.RO_TYPE) & 0xFF,
+                                       buf.get(at + MaPsciiMapFile.RO_PASS));
+    }
+
+    /***
+     * Retrieves the regions of a window
+     * which fall in chunks held in the
+     * file, one region per chunk.
+     * @param window Index positions to
+     *               look in.
+     * @return Returns the regions, clipped
+     *         to the window and the grid.
+     */
+    @Override
+    public List<Rectangle> regionsIn(Rectangle window){
+        Rectangle r = window.intersection(new Rectangle(0, 0, cols, rows));
+        if(r.isEmpty())
+            return new ArrayList<>();
+
+        int firstCx = (baseCol + r.x) >> CHUNK_SHIFT;
+        int lastCx = (baseCol + r.x + r.width - 1) >> CHUNK_SHIFT;
+        int firstCy = (baseRow + r.y) >> CHUNK_SHIFT;
+        int lastCy = (baseRow + r.y + r.height - 1) >> CHUNK_SHIFT;
+        long span = (long) (lastCx - firstCx + 1) * (lastCy - firstCy + 1);
+
+        ArrayList<Rectangle> regions = new ArrayList<>();
+        if(span <= chunkCount){
+            //look up every chunk position
+            //in the window
+            for(int cx = firstCx; cx <= lastCx; cx++){
+                for(int cy = firstCy; cy <= lastCy; cy++){
+                    if(findChunk(cx, cy) >= 0)
+                        regions.add(chunkRegion(cx, cy, r));
+                }//end for cy
+            }//end for cx
+        }//end if
+        else{
+            //fewer chunks are in the file
+            //than the window covers, so go
+            //through the directory, which is
+            //already in column order
+            for(int k = 0; k < chunkCount; k++){
+                int entry = dirOffset + k * MaPsciiMapFile.DIR_ENTRY_SIZE;
+                int cx = buf.getInt(entry + MaPsciiMapFile.DO_CX);
+                int cy = buf.getInt(entry + MaPsciiMapFile.DO_CY);
+                if(cx >= firstCx && cx <= lastCx && cy >= firstCy && cy <= lastCy)
+                    regions.add(chunkRegion(cx, cy, r));
+            }//end for k
+        }//end else
+
+        return regions;
+    }
+
+    @Override
+    public void setTile(int col, int row, MaPsciiTile tile){
+        throw new UnsupportedOperationException("MaPsciiMappedGrid is read only.");
+    }
+
+    @Override
+    public void reset(int baseCol, int baseRow, int width, int height){
+        throw new UnsupportedOperationException("MaPsciiMappedGrid is read only.");
+    }
+
+    @Override
+    public void put(int col, int row,
+                    Class<? extends MaPsciiTile> tileClass,
+                    int x, int y,
+                    MaPsciiTile.RenderPass pass,
+                    String guid){
+        throw new UnsupportedOperationException("MaPsciiMappedGrid is read only.");
+    }
+
+    @Override
+    public void add(MaPsciiColumn col,
+                    MaPsciiTile.Direction dir){
+        throw new UnsupportedOperationException("MaPsciiMappedGrid is read only.");
+    }
+
+    @Override
+    public void addTiles(MaPsciiTile.Direction dir,
+                         int count,
+                         Class<? extends MaPsciiTile> tileClass){
+        throw new UnsupportedOperationException("MaPsciiMappedGrid is read only.");
+    }
+
+    @Override
+    public int mapX(int col){
+        return baseCol + col;
+    }
+
+    @Override
+    public int mapY(int row){
+        return baseRow + row;
+    }
+
+    @Override
+    protected int originY(){
+        MaPsciiTile t = flyweight(0, 0);
+        if(t == null)
+            return 0;
+        else
+            return buf.getInt(record(0, 0) + MaPsciiMapFile.RO_Y) * -1;
+    }
+
+    /***
+     * Finds the record of an index
+     * position.
+     * @param col Column index.
+     * @param row Row index.
+     * @return Returns the offset of the
+     *         record, or -1 if the
+     *         position is outside the grid
+     *         or in a chunk not in the file.
+     */
+    private int record(int col, int row){
+        if(col < 0 || col >= cols || row < 0 || row >= rows)
+            return -1;
+
+        int wc = baseCol + col;
+        int wr = baseRow + row;
+        int cx = wc >> CHUNK_SHIFT;
+        int cy = wr >> CHUNK_SHIFT;
+
+        ChunkRef ref = lastChunk;
+        if(ref.cx != cx || ref.cy != cy){
+            ref = new ChunkRef(cx, cy, findChunk(cx, cy));
+            lastChunk = ref;
+        }//end if
+        if(ref.offset < 0)
+            return -1;
+
+        int cell = ((wc & CHUNK_MASK) << CHUNK_SHIFT) | (wr & CHUNK_MASK);
+        return ref.offset + cell * RECORD_SIZE;
+    }
+
+    /***
+     * Searches the chunk directory.
+     * @param cx Chunk column.
+     * @param cy Chunk row.
+     * @return Returns the offset of the
+     *         chunk records, or -1 if the
+     *         chunk is not in the file.
+     */
+    private int findChunk(int cx, int cy){
+        long key = MaPsciiMapFile.chunkKey(cx, cy);
+        int lo = 0;
+        int hi = chunkCount - 1;
+        while(lo <= hi){
+            int mid = (lo + hi) >>> 1;
+            int entry = dirOffset + mid * MaPsciiMapFile.DIR_ENTRY_SIZE;
+            long k = MaPsciiMapFile.chunkKey(buf.getInt(entry + MaPsciiMapFile.DO_CX),
+                                             buf.getInt(entry + MaPsciiMapFile.DO_CY));
+            if(k < key)
+                lo = mid + 1;
+            else if(k > key)
+                hi = mid - 1;
+            else
+                return (int) buf.getLong(entry + MaPsciiMapFile.DO_OFFSET);
+        }//end while
+
+        return -1;
+    }
+
+    /***
+     * Calculates the index positions of
+     * a chunk, clipped to a window.
+     * @param cx Chunk column.
+     * @param cy Chunk row.
+     * @param clip The window.
+     * @return Returns the region.
+     */
+    private Rectangle chunkRegion(int cx, int cy, Rectangle clip){
+        Rectangle r = new Rectangle((cx << CHUNK_SHIFT) - baseCol,
+                                    (cy << CHUNK_SHIFT) - baseRow,
+                                    MaPsciiMapFile.CHUNK_SIZE, MaPsciiMapFile.CHUNK_SIZE);
+        return r.intersection(clip);
+    }
+
+    /***
+     * A chunk looked up in the directory.
+     */
+    private static class ChunkRef
+    {
+        final int cx;
+        final int cy;
+        final int offset;
+
+        ChunkRef(int cx, int cy, int offset){
+            this.cx = cx;
+            this.cy = cy;
+            this.offset = offset;
+        }
+    }
+}
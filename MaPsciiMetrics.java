@@ -0,0 +1,268 @@
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/***
+ * Rolling render and storage metrics
+ * for a map: frame times by phase and
+ * the tile counts of the last frame,
+ * and the times of database loads and
+ * saves.  The metrics can be published
+ * as a JMX MBean.  Recording is thread
+ * safe.
+ */
+public class MaPsciiMetrics implements MaPsciiMetricsMBean
+{
+    //samples kept for the percentiles
+    private static final int WINDOW = 1024;
+
+    private static final String DOMAIN = "MaPscii";
+
+    private final Series frames = new Series();
+    private final Series builds = new Series();
+    private final Series draws = new Series();
+    private final Series flushes = new Series();
+    private final Series loads = new Series();
+    private final Series saves = new Series();
+
+    private volatile MaPsciiMap.RenderStats last;
+
+    private ObjectName registered;
+
+    /***
+     * Constructor.
+     */
+    public MaPsciiMetrics(){}
+
+    /***
+     * Records the statistics of a frame.
+     * @param stats The frame statistics.
+     */
+    public void recordFrame(MaPsciiMap.RenderStats stats){
+        frames.add(stats.getBuildNanos() + stats.getDrawNanos());
+        builds.add(stats.getBuildNanos());
+        draws.add(stats.getDrawNanos());
+        last = stats;
+    }
+
+    /***
+     * Records the time taken to flush a
+     * frame from the screen.  The tile
+     * counts of the last frame are left
+     * as they are.
+     * @param stats The frame statistics,
+     *              with the flush time.
+     */
+    public void recordFlush(MaPsciiMap.RenderStats stats){
+        flushes.add(stats.getFlushNanos());
+    }
+
+    /***
+     * Records the time taken by a load
+     * from storage.
+     * @param nanos The time taken.
+     */
+    public void recordLoad(long nanos){
+        loads.add(nanos);
+    }
+
+    /***
+     * Records the time taken by a save
+     * to storage.
+     * @param nanos The time taken.
+     */
+    public void recordSave(long nanos){
+        saves.add(nanos);
+    }
+
+    /***
+     * Publishes the metrics on the platform
+     * MBean server, replacing any metrics
+     * published under the same name.
+     * @param name The name to publish under.
+     * @return Returns True if published;
+     *         False if not.
+     */
+    public synchronized boolean register(String name){
+        unregister();
+        try{
+            ObjectName on = new ObjectName(DOMAIN + ":type=Map,name=" + ObjectName.quote(name));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if(server.isRegistered(on))
+                server.unregisterMBean(on);
+            server.registerMBean(this, on);
+            registered = on;
+        }//end try
+        catch(JMException jme){
+            System.out.println(jme.getMessage());
+            return false;
+        }//end catch jme
+
+        return true;
+    }
+
+    /***
+     * Withdraws the metrics from the
+     * platform MBean server.
+     */
+    public synchronized void unregister(){
+        if(registered == null)
+            return;
+
+        try{
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registered);
+        }//end try
+        catch(JMException jme){
+            //already gone
+        }//end catch jme
+
+        registered = null;
+    }
+
+    @Override
+    public long getFrameCount(){
+        return frames.count();
+    }
+    @Override
+    public double getFrameMeanMillis(){
+        return frames.mean() / 1e6;
+    }
+    @Override
+    public double getFrameP50Millis(){
+        return frames.percentile(50) / 1e6;
+    }
+    @Override
+    public double getFrameP99Millis(){
+        return frames.percentile(99) / 1e6;
+    }
+    @Override
+    public double getFrameMaxMillis(){
+        return frames.max() / 1e6;
+    }
+    @Override
+    public double getBuildP99Millis(){
+        return builds.percentile(99) / 1e6;
+    }
+    @Override
+    public double getDrawP99Millis(){
+        return draws.percentile(99) / 1e6;
+    }
+    @Override
+    public double getFlushP99Millis(){
+        return flushes.percentile(99) / 1e6;
+    }
+
+    @Override
+    public long getLastTilesScanned(){
+        MaPsciiMap.RenderStats s = last;
+        return (s == null) ? 0 : s.getTilesScanned();
+    }
+    @Override
+    public long getLastTilesCulled(){
+        MaPsciiMap.RenderStats s = last;
+        return (s == null) ? 0 : s.getTilesCulled();
+    }
+    @Override
+    public long getLastTilesListed(){
+        MaPsciiMap.RenderStats s = last;
+        return (s == null) ? 0 : s.getTilesListed();
+    }
+    @Override
+    public long getLastLinesBlitted(){
+        MaPsciiMap.RenderStats s = last;
+        return (s == null) ? 0 : s.getLinesBlitted();
+    }
+    @Override
+    public long getLastCharsWritten(){
+        MaPsciiMap.RenderStats s = last;
+        return (s == null) ? 0 : s.getCharsWritten();
+    }
+
+    @Override
+    public long getLoadCount(){
+        return loads.count();
+    }
+    @Override
+    public double getLoadMeanMillis(){
+        return loads.mean() / 1e6;
+    }
+    @Override
+    public double getLoadP99Millis(){
+        return loads.percentile(99) / 1e6;
+    }
+    @Override
+    public long getSaveCount(){
+        return saves.count();
+    }
+    @Override
+    public double getSaveMeanMillis(){
+        return saves.mean() / 1e6;
+    }
+    @Override
+    public double getSaveP99Millis(){
+        return saves.percentile(99) / 1e6;
+    }
+
+    @Override
+    public void reset(){
+        frames.clear();
+        builds.clear();
+        draws.clear();
+        flushes.clear();
+        loads.clear();
+        saves.clear();
+        last = null;
+    }
+
+    /***
+     * Private class holding the samples of
+     * one timing: totals over all samples
+     * and a ring of the most recent ones
+     * for the percentiles.
+     */
+    private static class Series
+    {
+        long[] ring = new long[WINDOW];
+        long count;
+        long total;
+        long max;
+
+        synchronized void add(long nanos){
+            ring[(int) (count % WINDOW)] = nanos;
+            count++;
+            total += nanos;
+            max = Math.max(max, nanos);
+        }
+
+        synchronized long count(){
+            return count;
+        }
+
+        synchronized double mean(){
+            return (count == 0) ? 0 : (double) total / count;
+        }
+
+        synchronized long max(){
+            return max;
+        }
+
+        synchronized long percentile(int p){
+            int n = (int) Math.min(count, WINDOW);
+            if(n == 0)
+                return 0;
+
+            long[] sorted = Arrays.copyOf(ring, n);
+            Arrays.sort(sorted);
+            int i = (int) Math.ceil(p / 100.0 * n) - 1;
+            return sorted[Math.max(0, i)];
+        }
+
+        synchronized void clear(){
+            count = 0;
+            total = 0;
+            max = 0;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/***
+ * Management interface of the render
+ * and storage metrics of a map.  Times
+ * are in milliseconds; percentiles are
+ * taken over the most recent samples.
+ */
+public interface MaPsciiMetricsMBean
+{
+    public long getFrameCount();
+    public double getFrameMeanMillis();
+    public double getFrameP50Millis();
+    public double getFrameP99Millis();
+    public double getFrameMaxMillis();
+    public double getBuildP99Millis();
+    public double getDrawP99Millis();
+    public double getFlushP99Millis();
+
+    public long getLastTilesScanned();
+    public long getLastTilesCulled();
+    public long getLastTilesListed();
+    public long getLastLinesBlitted();
+    public long getLastCharsWritten();
+
+    public long getLoadCount();
+    public double getLoadMeanMillis();
+    public double getLoadP99Millis();
+    public long getSaveCount();
+    public double getSaveMeanMillis();
+    public double getSaveP99Millis();
+
+    public void reset();
+}
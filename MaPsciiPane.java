@@ -1,12 +1,28 @@
+import javafx.application.Platform;
 import javafx.scene.control.TextArea;
 import javafx.scene.text.Font;
 
+import java.awt.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
 /***
  * Control for viewing an ascii text
  * map, allowing pan and zoom
- * functionality.
+ * functionality.  Frames are built on a
+ * background render thread and only
+ * copied into the control on the JavaFX
+ * application thread, so large screens
+ * do not hold up the UI.  The map must
+ * only be changed on the render thread,
+ * through execute or render.
+ * Requests made on the JavaFX thread are
+ * only marked on the pane and passed on
+ * once per pulse, so a burst of resize,
+ * pan and zoom events between two pulses
+ * is rendered as one frame.
  */
-public class MaPsciiPane extends TextArea
+public class MaPsciiPane extends TextArea implements IMaPsciiView
 {
     //pixel-to-character conversion factors
     private static final double ADJ_P_W = 123;
@@ -21,7 +37,8 @@ public class MaPsciiPane extends TextArea
      * The scratch text area to render
      * the map images to before directly
      * copying them in the text area of
-     * the control.
+     * the control.  It belongs to the
+     * render thread.
      */
     private AsciiScreen screen;
     public AsciiScreen getScreen(){
@@ -39,7 +56,41 @@ public class MaPsciiPane extends TextArea
     }
     public void setMap(MaPsciiMap value){
         map = value;
+        pipeline.setMap(value);
+    }
+
+    /***
+     * Property: BeforeRender
+     * Called on the render thread before
+     * each frame with the map center about
+     * to be rendered.  May be null.
+     */
+    public Consumer<Point> getBeforeRender(){
+        return pipeline.getBeforeRender();
     }
+    public void setBeforeRender(Consumer<Point> value){
+        pipeline.setBeforeRender(value);
+    }
+
+    /***
+     * Builds the frames off the JavaFX
+     * application thread.
+     */
+    private MaPsciiRenderPipeline pipeline;
+
+    /***
+     * The latest finished frame not yet
+     * copied to the control.  Frames which
+     * finish before the control gets to
+     * them are skipped.
+     */
+    private AtomicReference<String> nextFrame = new AtomicReference<>();
+
+    /***
+     * Collects the requests made on the
+     * JavaFX thread into one per pulse.
+     */
+    private MaPsciiFrameScheduler scheduler;
 
     /***
      * Property: BackgroundChar.
@@ -66,6 +117,8 @@ public class MaPsciiPane extends TextArea
 
         //create the screen
         screen = new AsciiScreen();
+        pipeline = new MaPsciiRenderPipeline(map, screen, s -> present(s.flush()));
+        scheduler = new MaPsciiFrameScheduler(pipeline, this::sizeScreen);
     }
 
     /***
@@ -92,9 +145,20 @@ public class MaPsciiPane extends TextArea
     /***
      * Calculates and sets the screen
      * size based on the current
-     * control size.
+     * control size.  On the JavaFX thread
+     * the size is taken at the next pulse.
      */
     public void resize(){
+        scheduler.resize();
+    }
+
+    /***
+     * Measures the control and creates the
+     * task which sizes the screen to it.
+     * @return Returns the task, to be run
+     *         on the render thread.
+     */
+    private Runnable sizeScreen(){
         double taWidth = getWidth();
         double taHeight = getHeight();
 
@@ -108,18 +172,67 @@ public class MaPsciiPane extends TextArea
         taHeight += ADJ_C_H;
         int screenHeight = (int) taHeight;
 
-        screen.setWidth(screenWidth);
-        screen.setHeight(screenHeight);
-
+        return () -> {
+            screen.setWidth(screenWidth);
+            screen.setHeight(screenHeight);
+        };
     }
 
     /***
      * Renders the map to the screen
      * and then copies the image to
-     * the text area.
+     * the text area.  The frame is
+     * built on the render thread.
      */
     public void render(){
-        map.renderMap(screen);
-        setText(screen.flush());
+        scheduler.render();
+    }
+
+    /***
+     * Changes the map on the render
+     * thread, then renders it.
+     * @param change The change to make.
+     */
+    public void render(Runnable change){
+        scheduler.render(change);
+    }
+
+    /***
+     * Runs a task on the render thread,
+     * in order with the frames, without
+     * rendering.
+     * @param task The task.
+     */
+    public void execute(Runnable task){
+        scheduler.execute(task);
+    }
+
+    /***
+     * Pans the map by the x and y
+     * provided and copies the image
+     * to the text area.  The screen is
+     * updated incrementally where the
+     * map allows it.
+     * @param x The x distance in tiles to pan by.
+     * @param y The y distance in tiles to pan by.
+     */
+    public void pan(int x, int y){
+        scheduler.pan(x, y);
+    }
+
+    /***
+     * Hands a finished frame to the
+     * JavaFX application thread.  Called
+     * on the render thread.
+     * @param frame The frame.
+     */
+    private void present(String frame){
+        if(nextFrame.getAndSet(frame) == null){
+            Platform.runLater(() -> {
+                String latest = nextFrame.getAndSet(null);
+                if(latest != null)
+                    setText(latest);
+            });
+        }//end if
     }
 }
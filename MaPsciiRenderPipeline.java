@@ -0,0 +1,369 @@
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/***
+ * Builds map frames on a background
+ * render thread and hands each finished
+ * frame to a presenter.  The presenter
+ * is called on the render thread with
+ * the screen and must copy what it needs
+ * from it before returning.
+ * The map and the screen it renders to
+ * belong to the render thread: changes
+ * to the map (its grid, scale or center)
+ * are queued with execute or render and
+ * made on that thread, in order, before
+ * the next frame.  Requests which arrive
+ * while a frame is being built are
+ * merged, so however many pans or zooms
+ * are queued only one frame is built for
+ * them, with the pans added together.
+ */
+public class MaPsciiRenderPipeline
+{
+    /***
+     * Property: BeforeRender
+     * Called on the render thread before
+     * each frame with the map center about
+     * to be rendered, to bring the map data
+     * up to date.  May be null.
+     */
+    private volatile Consumer<Point> beforeRender;
+    public Consumer<Point> getBeforeRender(){
+        return beforeRender;
+    }
+    public void setBeforeRender(Consumer<Point> value){
+        beforeRender = value;
+    }
+
+    private MaPsciiMap map;
+    private AsciiScreen screen;
+    private Consumer<AsciiScreen> presenter;
+    private IMaPsciiExceptionHandler handler;
+
+    private ExecutorService executor;
+
+    /***
+     * Work queued for the render thread,
+     * guarded by lock.
+     */
+    private final Object lock = new Object();
+    private ArrayList<Runnable> changes = new ArrayList<>();
+    private int panX;
+    private int panY;
+    private boolean frameWanted;
+    private boolean fullFrame;
+    private boolean scheduled;
+
+    /***
+     * Count of frames built.
+     */
+    private volatile long frames;
+
+    /***
+     * Constructor.
+     * @param map The map to render.
+     * @param screen The screen the frames
+     *               are built in.  It must
+     *               only be used through
+     *               the pipeline.
+     * @param presenter Receives the screen
+     *                  holding each finished
+     *                  frame, on the render
+     *                  thread.
+     */
+    public MaPsciiRenderPipeline(MaPsciiMap map, AsciiScreen screen,
+                                 Consumer<AsciiScreen> presenter){
+        this(map, screen, presenter, null);
+    }
+
+    /***
+     * Constructor.
+     * @param map The map to render.
+     * @param screen The screen the frames
+     *               are built in.  It must
+     *               only be used through
+     *               the pipeline.
+     * @param presenter Receives the screen
+     *                  holding each finished
+     *                  frame, on the render
+     *                  thread.
+     * @param excHandler Handler for errors
+     *                   on the render thread,
+     *                   called on that thread.
+     *                   If null they go to
+     *                   the uncaught exception
+     *                   handler of the thread.
+     */
+    public MaPsciiRenderPipeline(MaPsciiMap map, AsciiScreen screen,
+                                 Consumer<AsciiScreen> presenter,
+                                 IMaPsciiExceptionHandler excHandler){
+        this.map = map;
+        this.screen = screen;
+        this.presenter = presenter;
+        handler = excHandler;
+
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "MaPscii renderer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /***
+     * Retrieves the number of frames
+     * built so far.
+     * @return Returns the frame count.
+     */
+    public long frameCount(){
+        return frames;
+    }
+
+    /***
+     * Replaces the map rendered, from the
+     * next frame on.
+     * @param value The map.
+     */
+    public void setMap(MaPsciiMap value){
+        execute(() -> map = value);
+    }
+
+    /***
+     * Queues a task to run on the render
+     * thread, after the work already
+     * queued.  No frame is built for it.
+     * @param task The task.
+     */
+    public void execute(Runnable task){
+        synchronized(lock){
+            queuePan();
+            changes.add(task);
+            schedule();
+        }//end synchronized
+    }
+
+    /***
+     * Queues a full render of the map.
+     */
+    public void render(){
+        synchronized(lock){
+            frameWanted = true;
+            fullFrame = true;
+            schedule();
+        }//end synchronized
+    }
+
+    /***
+     * Queues a change to the map to be
+     * made on the render thread, followed
+     * by a full render.
+     * @param change The change.
+     */
+    public void render(Runnable change){
+        synchronized(lock){
+            queuePan();
+            changes.add(change);
+            frameWanted = true;
+            fullFrame = true;
+            schedule();
+        }//end synchronized
+    }
+
+    /***
+     * Queues a pan of the map.  Pans
+     * queued together are made as one.
+     * @param x The x distance in tiles to pan by.
+     * @param y The y distance in tiles to pan by.
+     */
+    public void pan(int x, int y){
+        synchronized(lock){
+            panX += x;
+            panY += y;
+            frameWanted = true;
+            schedule();
+        }//end synchronized
+    }
+
+    /***
+     * Stops the render thread once the
+     * work already queued is done.
+     */
+    public void shutdown(){
+        executor.shutdown();
+    }
+
+    /***
+     * Waits for the render thread to stop
+     * after a shutdown.
+     * @param timeout The longest time to wait.
+     * @param unit The unit of the timeout.
+     * @return Returns True if the thread
+     *         stopped; False if the time
+     *         ran out.
+     * @throws InterruptedException
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+            throws InterruptedException{
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    /***
+     * Turns the pans queued so far into a
+     * change of the map center, so they are
+     * made before a change queued after
+     * them.  Called holding lock.
+     */
+    private void queuePan(){
+        if(panX == 0 && panY == 0)
+            return;
+
+        changes.add(centerShift(panX, panY));
+        panX = 0;
+        panY = 0;
+        fullFrame = true;
+    }
+
+    /***
+     * Creates a change which moves the map
+     * center, for pans which are made by a
+     * full render rather than panning the
+     * last frame.
+     * @param x The x distance in tiles.
+     * @param y The y distance in tiles.
+     * @return Returns the change, to be
+     *         run on the render thread.
+     */
+    Runnable centerShift(int x, int y){
+        return () -> {
+            Point center = (map == null) ? null : map.getMapCenter();
+            if(center != null)
+                map.setMapCenter(new Point(center.x + x, center.y + y));
+        };
+    }
+
+    /***
+     * Starts the render thread on the
+     * queued work if it is not already
+     * working.  Called holding lock.
+     */
+    private void schedule(){
+        if(!scheduled){
+            scheduled = true;
+            executor.execute(this::drain);
+        }//end if
+    }
+
+    /***
+     * Works through the queued requests
+     * until none are left.  Runs on the
+     * render thread.
+     */
+    private void drain(){
+        while(true){
+            ArrayList<Runnable> todo;
+            int x;
+            int y;
+            boolean want;
+            boolean full;
+
+            synchronized(lock){
+                if(changes.isEmpty() && !frameWanted){
+                    scheduled = false;
+                    return;
+                }//end if
+
+                todo = changes;
+                changes = new ArrayList<>();
+                x = panX;
+                y = panY;
+                want = frameWanted;
+                full = fullFrame;
+                panX = 0;
+                panY = 0;
+                frameWanted = false;
+                fullFrame = false;
+            }//end synchronized
+
+            //a failed change must not stop
+            //the changes queued after it
+            for(Runnable change : todo){
+                try{
+                    change.run();
+                }//end try
+                catch(RuntimeException re){
+                    exception(re);
+                }//end catch re
+            }//end for change
+
+            try{
+                if(want && map != null){
+                    buildFrame(x, y, full);
+                    frames++;
+
+                    //the presenter copies the frame out
+                    //of the screen, which is the flush;
+                    //the map is only drawn from here so
+                    //its last statistics are this frame's
+                    MaPsciiMap.RenderStats stats = map.getLastStats();
+                    long start = System.nanoTime();
+                    presenter.accept(screen);
+                    if(stats != null)
+                        map.recordFlush(stats, System.nanoTime() - start);
+                }//end if
+            }//end try
+            catch(RuntimeException re){
+                //a failed frame must not stop
+                //the requests after it
+                exception(re);
+            }//end catch re
+        }//end while
+    }
+
+    /***
+     * Handles exceptions which occur on
+     * the render thread.
+     * @param exc The exception.
+     */
+    private void exception(RuntimeException exc){
+        if(handler != null){
+            handler.handleException(exc);
+        }//end if
+        else{
+            Thread t = Thread.currentThread();
+            t.getUncaughtExceptionHandler().uncaughtException(t, exc);
+        }//end else
+    }
+
+    /***
+     * Builds a frame in the screen.
+     * @param x The x distance to pan by.
+     * @param y The y distance to pan by.
+     * @param full True to render the whole
+     *             map rather than pan the
+     *             last frame.
+     */
+    private void buildFrame(int x, int y, boolean full){
+        Point center = map.getMapCenter();
+        Consumer<Point> before = beforeRender;
+
+        if(center == null){
+            map.renderMap(screen);
+        }//end if
+        else if(full){
+            if(x != 0 || y != 0)
+                map.setMapCenter(new Point(center.x + x, center.y + y));
+            if(before != null)
+                before.accept(map.getMapCenter());
+            map.renderMap(screen);
+        }//end else if
+        else{
+            if(before != null)
+                before.accept(new Point(center.x + x, center.y + y));
+            map.panMap(x, y, screen);
+        }//end else
+    }
+}
@@ -0,0 +1,274 @@
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+/***
+ * Regression check of the render path.
+ * A generated map is rendered in each of
+ * the ways a frame can be made, and each
+ * is compared with a full serial render:
+ * panning a frame against rendering the
+ * panned view, rendering in parallel
+ * bands against rendering serially, and
+ * the dense, chunked, json and .map
+ * grids against the grid they were made
+ * from.  The full render is itself
+ * compared with a render scanning every
+ * tile of the grid.  The mismatches are
+ * printed and the exit status is 1 if
+ * there were any.
+ */
+public class MaPsciiRenderTest
+{
+    private static final int[] SCALES = {1, 2, 3};
+    private static final int[][] SCREENS = {{40, 24}, {41, 25}, {80, 30}, {33, 17}};
+    private static final int MAX_PAN = 3;
+    private static final int WALK_STEPS = 40;
+    private static final int MAX_REPORTED = 20;
+
+    private static int checks;
+    private static int failures;
+
+    public static void main(String[] args){
+        MaPsciiGrid grid;
+        try{
+            grid = buildGrid(60, 40, 1);
+        }//end try
+        catch(MaPsciiContextException mce){
+            System.out.println(mce.getMessage());
+            System.exit(1);
+            return;
+        }//end catch mce
+
+        Point[] centers = {new Point(30, 20), new Point(2, 3), new Point(58, 39), new Point(-2, 41)};
+
+        checkWindows(grid, centers);
+        checkPans(grid, centers);
+        checkParallel(grid, centers);
+        try{
+            checkGrids(grid, centers);
+        }//end try
+        catch(IOException ioe){
+            System.out.println(ioe.getMessage());
+            failures++;
+        }//end catch ioe
+
+        System.out.println(String.format("%1$d checks, %2$d failed", checks, failures));
+        if(failures > 0)
+            System.exit(1);
+    }
+
+    /***
+     * Builds a grid of squares with every
+     * render pass, some without a pass and
+     * some positions holding no tile.
+     * @param w Number of columns.
+     * @param h Number of rows.
+     * @param seed Seed of the layout.
+     * @return Returns the grid.
+     * @throws MaPsciiContextException
+     */
+    private static MaPsciiGrid buildGrid(int w, int h, long seed)
+            throws MaPsciiContextException{
+        Random rnd = new Random(seed);
+        MaPsciiTile.RenderPass[] passes = MaPsciiTile.RenderPass.values();
+
+        MaPsciiGrid grid = new MaPsciiGrid();
+        for(int i = 0; i < w; i++){
+            MaPsciiColumn col = new MaPsciiColumn(i);
+            for(int j = 0; j < h; j++){
+                MaPsciiSquare tile = null;
+                if(rnd.nextInt(25) != 0){
+                    tile = new MaPsciiSquare(i, j);
+                    int p = rnd.nextInt(passes.length + 1);
+                    tile.setRenderPass((p < passes.length) ? passes[p] : null);
+                }//end if
+                col.getTiles().add(tile);
+            }//end for j
+            grid.add(col, MaPsciiTile.Direction.RIGHT);
+        }//end for i
+
+        return grid;
+    }
+
+    /***
+     * Compares full renders with renders
+     * which scan every tile of the grid,
+     * so a window leaving out tiles that
+     * are on screen is found.
+     * @param grid The grid.
+     * @param centers The views to render.
+     */
+    private static void checkWindows(MaPsciiGrid grid, Point[] centers){
+        MaPsciiMap map = new MaPsciiMap();
+        map.setGrid(grid);
+        MaPsciiMap unclipped = new MaPsciiMap();
+        unclipped.setGrid(new UnclippedGrid(grid));
+
+        for(int scale : SCALES){
+            for(int[] size : SCREENS){
+                for(Point center : centers){
+                    MaPsciiViewport view = new MaPsciiViewport(center, scale, size[0], size[1]);
+                    AsciiScreen screen = new AsciiScreen(MaPsciiTile.GSTAR);
+                    unclipped.renderMap(view, screen);
+                    check("window " + view, map, view, screen);
+                }//end for center
+            }//end for size
+        }//end for scale
+    }
+
+    /***
+     * Compares every pan of up to MAX_PAN
+     * tiles each way, and a random walk of
+     * pans, with full renders of the views
+     * panned to.
+     * @param grid The grid.
+     * @param centers The views to pan from.
+     */
+    private static void checkPans(MaPsciiGrid grid, Point[] centers){
+        MaPsciiMap map = new MaPsciiMap();
+        map.setGrid(grid);
+        Random rnd = new Random(1);
+
+        for(int scale : SCALES){
+            for(int[] size : SCREENS){
+                for(Point center : centers){
+                    MaPsciiViewport view = new MaPsciiViewport(center, scale, size[0], size[1]);
+                    for(int x = -MAX_PAN; x <= MAX_PAN; x++){
+                        for(int y = -MAX_PAN; y <= MAX_PAN; y++){
+                            AsciiScreen panned = new AsciiScreen(MaPsciiTile.GSTAR);
+                            map.renderMap(view, panned);
+                            MaPsciiViewport next = map.panMap(view, x, y, panned);
+                            check("pan " + x + "," + y + " from " + view, map, next, panned);
+                        }//end for y
+                    }//end for x
+                }//end for center
+
+                //pans made one after another
+                //scroll frames already panned
+                MaPsciiViewport view = new MaPsciiViewport(centers[0], scale, size[0], size[1]);
+                AsciiScreen panned = new AsciiScreen(MaPsciiTile.GSTAR);
+                map.renderMap(view, panned);
+                for(int k = 0; k < WALK_STEPS; k++){
+                    int x = rnd.nextInt(2 * MAX_PAN + 1) - MAX_PAN;
+                    int y = rnd.nextInt(2 * MAX_PAN + 1) - MAX_PAN;
+                    view = map.panMap(view, x, y, panned);
+                    check("walk step " + k + " to " + view, map, view, panned);
+                }//end for k
+            }//end for size
+        }//end for scale
+    }
+
+    /***
+     * Compares renders in parallel bands
+     * with serial renders.
+     * @param grid The grid.
+     * @param centers The views to render.
+     */
+    private static void checkParallel(MaPsciiGrid grid, Point[] centers){
+        MaPsciiMap serial = new MaPsciiMap();
+        serial.setGrid(grid);
+        MaPsciiMap parallel = new MaPsciiMap();
+        parallel.setGrid(grid);
+        parallel.setParallelRender(true);
+        parallel.setParallelThreshold(0);
+
+        for(int scale : SCALES){
+            for(int[] size : SCREENS){
+                for(Point center : centers){
+                    MaPsciiViewport view = new MaPsciiViewport(center, scale, size[0], size[1]);
+                    AsciiScreen screen = new AsciiScreen(MaPsciiTile.GSTAR);
+                    parallel.renderMap(view, screen);
+                    check("parallel " + view, serial, view, screen);
+                }//end for center
+            }//end for size
+        }//end for scale
+    }
+
+    /***
+     * Compares renders of the grid copied
+     * into each kind of storage, and read
+     * back from json and .map files, with
+     * renders of the grid itself.
+     * @param grid The grid.
+     * @param centers The views to render.
+     * @throws IOException
+     */
+    private static void checkGrids(MaPsciiGrid grid, Point[] centers)
+            throws IOException{
+        File json = File.createTempFile("mapscii", ".json");
+        File mapped = File.createTempFile("mapscii", ".map");
+        json.deleteOnExit();
+        mapped.deleteOnExit();
+
+        MaPsciiJsonFile.write(grid, json);
+        MaPsciiChunkedGrid fromJson = new MaPsciiChunkedGrid();
+        MaPsciiJsonFile.read(json, fromJson);
+        MaPsciiMapFile.write(grid, mapped);
+
+        MaPsciiGrid[] copies = {new MaPsciiDenseGrid(grid),
+                                new MaPsciiChunkedGrid(grid),
+                                fromJson,
+                                new MaPsciiMappedGrid(mapped)};
+        String[] names = {"dense", "chunked", "json", ".map"};
+
+        MaPsciiMap expected = new MaPsciiMap();
+        expected.setGrid(grid);
+        for(int c = 0; c < copies.length; c++){
+            MaPsciiMap map = new MaPsciiMap();
+            map.setGrid(copies[c]);
+            for(int scale : SCALES){
+                for(int[] size : SCREENS){
+                    for(Point center : centers){
+                        MaPsciiViewport view = new MaPsciiViewport(center, scale, size[0], size[1]);
+                        AsciiScreen screen = new AsciiScreen(MaPsciiTile.GSTAR);
+                        map.renderMap(view, screen);
+                        check(names[c] + " " + view, expected, view, screen);
+                    }//end for center
+                }//end for size
+            }//end for scale
+        }//end for c
+    }
+
+    /***
+     * Compares a screen with a full serial
+     * render of a view, reporting it if
+     * they differ.
+     * @param what Description of the screen.
+     * @param map The map to render the view
+     *            of.
+     * @param view The view.
+     * @param actual The screen to check.
+     */
+    private static void check(String what, MaPsciiMap map,
+                              MaPsciiViewport view, AsciiScreen actual){
+        AsciiScreen expected = new AsciiScreen(MaPsciiTile.GSTAR);
+        map.renderMap(view, expected);
+
+        checks++;
+        if(!expected.flush().equals(actual.flush())){
+            failures++;
+            if(failures <= MAX_REPORTED)
+                System.out.println("Mismatch: " + what);
+        }//end if
+    }
+
+    /***
+     * A dense grid whose regions are the
+     * whole grid, whatever window is
+     * looked in.
+     */
+    private static class UnclippedGrid extends MaPsciiDenseGrid
+    {
+        UnclippedGrid(MaPsciiGrid source){
+            super(source);
+        }
+
+        @Override
+        public List<Rectangle> regionsIn(Rectangle window){
+            return super.regionsIn(new Rectangle(0, 0, width(), height()));
+        }
+    }
+}
@@ -0,0 +1,380 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/***
+ * Headless server rendering map views
+ * over http on the loopback interface.
+ * A GET of
+ *   /render?map=name&x=..&y=..&scale=..&w=..&h=..
+ * returns the rendered screen as plain
+ * text.  The map is a .json, .json.gz or
+ * .map file in the map directory; x and
+ * y default to the middle of the map,
+ * the scale to 1 and the screen to
+ * 80x24.  The X-Map-Width and
+ * X-Map-Height headers of the reply
+ * give the extent of the map, which x
+ * and y are index positions in.
+ * Each map is loaded once and shared by
+ * every request; requests keep no state
+ * and render through their own viewport
+ * and screen, so they run in parallel.
+ * Requests are handled on virtual
+ * threads where the runtime has them
+ * and on a cached thread pool where it
+ * does not.
+ */
+public class MaPsciiServer
+{
+    private static final String RENDER_PATH = "/render";
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_WIDTH = 80;
+    private static final int DEFAULT_HEIGHT = 24;
+    private static final int MAX_SCREEN = 1000;
+    private static final int MAX_SCALE = 32;
+
+    //query parameter names
+    private static final String QP_MAP = "map";
+    private static final String QP_X = "x";
+    private static final String QP_Y = "y";
+    private static final String QP_SCALE = "scale";
+    private static final String QP_WIDTH = "w";
+    private static final String QP_HEIGHT = "h";
+
+    private static final String CONTENT_TYPE = "text/plain; charset=US-ASCII";
+
+    //headers giving the extent of the map
+    //in grid index positions
+    static final String HDR_MAP_WIDTH = "X-Map-Width";
+    static final String HDR_MAP_HEIGHT = "X-Map-Height";
+
+    private File mapDir;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /***
+     * The maps loaded or being loaded so
+     * far, keyed by file name.  A map which
+     * failed to load is held as null, so it
+     * is not read again.
+     */
+    private ConcurrentHashMap<String, CompletableFuture<MaPsciiMap>> maps = new ConcurrentHashMap<>();
+
+    /***
+     * Constructor.
+     * @param mapDir The directory the maps
+     *               are served from.
+     * @param port The port to listen on,
+     *             zero for any free port.
+     * @throws IOException
+     */
+    public MaPsciiServer(File mapDir, int port)
+            throws IOException{
+        this.mapDir = mapDir.getCanonicalFile();
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext(RENDER_PATH, this::handleRender);
+        executor = newRequestExecutor();
+        server.setExecutor(executor);
+    }
+
+    /***
+     * Starts the server and serves maps
+     * from a directory until the process
+     * is stopped.
+     * @param args The map directory and
+     *             optionally the port.
+     */
+    public static void main(String[] args){
+        if(args.length < 1){
+            System.out.println("Usage: MaPsciiServer <mapDirectory> [port]");
+            return;
+        }//end if
+
+        try{
+            int port = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+            MaPsciiServer s = new MaPsciiServer(new File(args[0]), port);
+            s.start();
+            System.out.println("Serving " + args[0] + " at http://localhost:" + s.getPort() + RENDER_PATH);
+        }//end try
+        catch(IOException | NumberFormatException e){
+            System.out.println(e.getMessage());
+        }//end catch e
+    }
+
+    /***
+     * Starts accepting requests.
+     */
+    public void start(){
+        server.start();
+    }
+
+    /***
+     * Stops accepting requests and waits
+     * up to a second for the requests
+     * being handled.
+     */
+    public void stop(){
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    /***
+     * Retrieves the port the server is
+     * listening on.
+     * @return Returns the port.
+     */
+    public int getPort(){
+        return server.getAddress().getPort();
+    }
+
+    /***
+     * Creates the executor requests are
+     * handled on: one virtual thread per
+     * request where the runtime supports
+     * them, otherwise a cached pool.
+     * @return Returns the executor.
+     */
+    private static ExecutorService newRequestExecutor(){
+        try{
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        }//end try
+        catch(ReflectiveOperationException roe){
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "MaPscii server");
+                t.setDaemon(true);
+                return t;
+            });
+        }//end catch roe
+    }
+
+    /***
+     * Handles a render request.
+     * @param exchange The request.
+     * @throws IOException
+     */
+    private void handleRender(HttpExchange exchange)
+            throws IOException{
+        try{
+            if(!"GET".equals(exchange.getRequestMethod())){
+                reply(exchange, 405, "Only GET is supported.");
+                return;
+            }//end if
+
+            HashMap<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            MaPsciiMap map = map(query.get(QP_MAP));
+            if(map == null){
+                reply(exchange, 404, "Unknown map.");
+                return;
+            }//end if
+
+            MaPsciiGrid grid = map.getGrid();
+            int x = intParam(query, QP_X, grid.width() / 2, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            int y = intParam(query, QP_Y, grid.height() / 2, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            int scale = intParam(query, QP_SCALE, 1, 1, MAX_SCALE);
+            int w = intParam(query, QP_WIDTH, DEFAULT_WIDTH, 1, MAX_SCREEN);
+            int h = intParam(query, QP_HEIGHT, DEFAULT_HEIGHT, 1, MAX_SCREEN);
+
+            AsciiScreen screen = new AsciiScreen();
+            MaPsciiMap.RenderStats stats = map.renderMap(new MaPsciiViewport(new Point(x, y), scale, w, h), screen);
+            reply(exchange, map, stats, screen);
+        }//end try
+        catch(IllegalArgumentException iae){
+            reply(exchange, 400, iae.getMessage());
+        }//end catch iae
+        catch(CompletionException ce){
+            reply(exchange, 500, "Map failed to load.");
+        }//end catch ce
+        finally{
+            exchange.close();
+        }//end finally
+    }
+
+    /***
+     * Retrieves a map, loading it the
+     * first time it is asked for.  The
+     * first request for a map loads it on
+     * its own thread, outside of the map
+     * table; requests for the same map
+     * made meanwhile wait for that load.
+     * @param name The file name of the map
+     *             in the map directory.
+     * @return Returns the map, or null if
+     *         there is no such map or it
+     *         failed to load.
+     * @throws IOException
+     * @throws CompletionException if the
+     *         load was ended by an error.
+     */
+    private MaPsciiMap map(String name)
+            throws IOException{
+        if(name == null || !MaPsciiMap.isMapFile(name))
+            return null;
+
+        CompletableFuture<MaPsciiMap> loading = maps.get(name);
+        if(loading == null){
+            //only files directly in the map
+            //directory are served
+            File file = new File(mapDir, name).getCanonicalFile();
+            if(!mapDir.equals(file.getParentFile()) || !file.isFile())
+                return null;
+
+            CompletableFuture<MaPsciiMap> mine = new CompletableFuture<>();
+            loading = maps.putIfAbsent(name, mine);
+            if(loading == null){
+                loading = mine;
+                try{
+                    mine.complete(loadMap(name, file));
+                }//end try
+                catch(Throwable t){
+                    //an error such as running out
+                    //of memory must not leave the
+                    //requests waiting on the load
+                    //blocked for ever
+                    mine.completeExceptionally(t);
+                    throw t;
+                }//end catch t
+            }//end if
+        }//end if
+
+        return loading.join();
+    }
+
+    /***
+     * Loads a map file.  The map publishes
+     * its metrics over JMX under its file
+     * name.
+     * @param name The file name of the map.
+     * @param file The map file.
+     * @return Returns the map, or null if
+     *         it failed to load.
+     */
+    private static MaPsciiMap loadMap(String name, File file){
+        MaPsciiMap m = new MaPsciiMap();
+        try{
+            if(!m.loadMap(file))
+                return null;
+        }//end try
+        catch(RuntimeException re){
+            System.out.println(name + ": " + re.getMessage());
+            return null;
+        }//end catch re
+
+        m.getMetrics().register(name);
+        return m;
+    }
+
+    /***
+     * Parses a query string.
+     * @param raw The raw query, may be null.
+     * @return Returns the decoded values
+     *         by name.
+     */
+    private static HashMap<String, String> parseQuery(String raw){
+        HashMap<String, String> query = new HashMap<>();
+        if(raw == null)
+            return query;
+
+        for(String pair : raw.split("&")){
+            int eq = pair.indexOf('=');
+            if(eq > 0){
+                query.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                          URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }//end if
+        }//end for pair
+
+        return query;
+    }
+
+    /***
+     * Reads an integer query parameter.
+     * @param query The query.
+     * @param name The parameter name.
+     * @param def The value when it is missing.
+     * @param min The smallest value allowed.
+     * @param max The largest value allowed.
+     * @return Returns the value.
+     * @throws IllegalArgumentException if the
+     *         value is not a number in range.
+     */
+    private static int intParam(HashMap<String, String> query, String name,
+                                int def, int min, int max){
+        String v = query.get(name);
+        if(v == null)
+            return def;
+
+        try{
+            int i = Integer.parseInt(v);
+            if(i >= min && i <= max)
+                return i;
+        }//end try
+        catch(NumberFormatException nfe){
+            //reported below
+        }//end catch nfe
+
+        throw new IllegalArgumentException("Bad value for " + name + ".");
+    }
+
+    /***
+     * Sends a rendered screen, streaming
+     * its rows straight to the response.
+     * The time taken to encode and send
+     * them is recorded as the flush time.
+     * @param exchange The request.
+     * @param map The map rendered.
+     * @param stats The statistics of the frame.
+     * @param screen The screen.
+     * @throws IOException
+     */
+    private static void reply(HttpExchange exchange, MaPsciiMap map,
+                              MaPsciiMap.RenderStats stats, AsciiScreen screen)
+            throws IOException{
+        long start = System.nanoTime();
+        MaPsciiGrid grid = map.getGrid();
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.getResponseHeaders().set(HDR_MAP_WIDTH, Integer.toString(grid.width()));
+        exchange.getResponseHeaders().set(HDR_MAP_HEIGHT, Integer.toString(grid.height()));
+        //a length of zero would mean chunked
+        int length = screen.flushLength();
+        exchange.sendResponseHeaders(200, (length == 0) ? -1 : length);
+        try(OutputStream out = exchange.getResponseBody()){
+            screen.flushTo(Channels.newChannel(out));
+        }//end try
+        map.recordFlush(stats, System.nanoTime() - start);
+    }
+
+    /***
+     * Sends a plain text response.
+     * @param exchange The request.
+     * @param status The http status.
+     * @param text The body.
+     * @throws IOException
+     */
+    private static void reply(HttpExchange exchange, int status, String text)
+            throws IOException{
+        byte[] body = text.getBytes(StandardCharsets.US_ASCII);
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.sendResponseHeaders(status, body.length);
+        try(OutputStream out = exchange.getResponseBody()){
+            out.write(body);
+        }//end try
+    }
+}
@@ -0,0 +1,121 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/***
+ * Load test for MaPsciiServer.  A number
+ * of clients request views of a map at
+ * random centers within the map as fast
+ * as they can, then the throughput and
+ * the latency percentiles are printed.
+ */
+public class MaPsciiServerTest
+{
+    public static void main(String[] args){
+        if(args.length < 2){
+            System.out.println("Usage: MaPsciiServerTest <serverUrl> <map> [clients] [requests] [width] [height] [scale]");
+            return;
+        }//end if
+
+        String base = args[0];
+        String mapName = URLEncoder.encode(args[1], StandardCharsets.UTF_8);
+        int clients = (args.length > 2) ? Integer.parseInt(args[2]) : 16;
+        int requests = (args.length > 3) ? Integer.parseInt(args[3]) : 2000;
+        int w = (args.length > 4) ? Integer.parseInt(args[4]) : 80;
+        int h = (args.length > 5) ? Integer.parseInt(args[5]) : 24;
+        int scale = (args.length > 6) ? Integer.parseInt(args[6]) : 1;
+
+        HttpClient client = HttpClient.newHttpClient();
+
+        //one request first to have the map
+        //loaded before the timing starts, and
+        //to learn its extent so every view
+        //is centered on the map
+        String first = base + "?map=" + mapName + "&w=1&h=1";
+        int mapW;
+        int mapH;
+        try{
+            HttpResponse<String> r = client.send(HttpRequest.newBuilder(URI.create(first)).build(),
+                                                 HttpResponse.BodyHandlers.ofString());
+            if(r.statusCode() != 200){
+                System.out.println(r.statusCode() + " " + r.body());
+                return;
+            }//end if
+
+            mapW = Integer.parseInt(r.headers().firstValue(MaPsciiServer.HDR_MAP_WIDTH).orElse("0"));
+            mapH = Integer.parseInt(r.headers().firstValue(MaPsciiServer.HDR_MAP_HEIGHT).orElse("0"));
+        }//end try
+        catch(IOException | InterruptedException | NumberFormatException e){
+            System.out.println(e.getMessage());
+            return;
+        }//end catch e
+        if(mapW < 1 || mapH < 1){
+            System.out.println("The map is empty.");
+            return;
+        }//end if
+
+        long[] latencies = new long[requests];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+
+        long start = System.nanoTime();
+        for(int c = 0; c < clients; c++){
+            int seed = c;
+            pool.execute(() -> {
+                Random rnd = new Random(seed);
+                int i;
+                while((i = next.getAndIncrement()) < requests){
+                    String url = base + "?map=" + mapName +
+                                 "&x=" + rnd.nextInt(mapW) + "&y=" + rnd.nextInt(mapH) +
+                                 "&scale=" + scale + "&w=" + w + "&h=" + h;
+                    long t0 = System.nanoTime();
+                    try{
+                        HttpResponse<byte[]> r = client.send(HttpRequest.newBuilder(URI.create(url)).build(),
+                                                             HttpResponse.BodyHandlers.ofByteArray());
+                        if(r.statusCode() != 200)
+                            errors.incrementAndGet();
+                    }//end try
+                    catch(IOException | InterruptedException e){
+                        errors.incrementAndGet();
+                    }//end catch e
+                    latencies[i] = System.nanoTime() - t0;
+                }//end while
+            });
+        }//end for c
+
+        pool.shutdown();
+        try{
+            pool.awaitTermination(1, TimeUnit.HOURS);
+        }//end try
+        catch(InterruptedException ie){
+            return;
+        }//end catch ie
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        System.out.println(String.format("%1$d requests, %2$d clients, %3$dx%4$d scale %5$d",
+                                         requests, clients, w, h, scale));
+        System.out.println(String.format("throughput %1$.1f req/s, errors %2$d",
+                                         requests / (elapsed / 1e9), errors.get()));
+        System.out.println(String.format("latency p50 %1$.2f ms, p99 %2$.2f ms, max %3$.2f ms",
+                                         percentile(latencies, 50) / 1e6,
+                                         percentile(latencies, 99) / 1e6,
+                                         latencies[latencies.length - 1] / 1e6));
+    }
+
+    private static long percentile(long[] sorted, int p){
+        int i = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, i))];
+    }
+}
@@ -102,11 +102,18 @@ public class MaPsciiSquare extends MaPsciiTile
     @Override
     public Point calcVector(int scale,
                             Point mapVector) {
-        int x = Math.abs(mapVector.x) * (calcWidth(scale) - 1);
-        int y = Math.abs(mapVector.y) * (calcHeight(scale) - 1);
+        ScaleMetrics m = scaleMetrics(scale);
+        int x = Math.abs(mapVector.x) * m.getPitchX();
+        int y = Math.abs(mapVector.y) * m.getPitchY();
         return new Point(x, y);
     }
 
+    @Override
+    protected Point calcPitch(int scale) {
+        //neighbouring squares share a border
+        return new Point(calcWidth(scale) - 1, calcHeight(scale) - 1);
+    }
+
     @Override
     protected String renderLine(int scale, int line, RenderPass pass) {
         int w = calcWidth(scale);
@@ -0,0 +1,344 @@
+import java.awt.*;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/***
+ * Presents screens on an ANSI terminal,
+ * sending only what changed.  The frame
+ * last sent is kept, and each new frame
+ * is compared with it row by row: every
+ * run of changed characters is sent as a
+ * cursor move followed by the run, runs
+ * separated by fewer unchanged characters
+ * than a cursor move costs being sent as
+ * one.  The first frame, and any frame of
+ * a different size, is sent whole.
+ * Each frame is written to the stream as
+ * a single block of US-ASCII bytes;
+ * characters outside printable ASCII are
+ * sent as '?'.
+ * A terminal can be the presenter of a
+ * MaPsciiRenderPipeline.
+ */
+public class MaPsciiTerminal implements Consumer<AsciiScreen>
+{
+    private static final byte ESC = 0x1b;
+    private static final byte UNPRINTABLE = '?';
+
+    //unchanged characters a run may span
+    //before it is cheaper to split it with
+    //a cursor move: ESC [ row ; col H
+    private static final int MAX_GAP = 6;
+
+    private OutputStream out;
+
+    /***
+     * The frame last sent, null until the
+     * first frame or after invalidate.
+     */
+    private char[][] sent;
+
+    /***
+     * Bytes of the frame being encoded,
+     * reused from frame to frame.
+     */
+    private byte[] buf = new byte[4096];
+    private int len;
+
+    private long bytesWritten;
+    private int lastFrameBytes;
+
+    /***
+     * Constructor.
+     * @param out The stream of the terminal.
+     */
+    public MaPsciiTerminal(OutputStream out){
+        this.out = out;
+    }
+
+    /***
+     * Presents a map file on the console,
+     * reading commands from the standard
+     * input a line at a time: a, d, w and s
+     * pan the map (repeat the letter to pan
+     * further), + and - zoom and q quits.
+     * Over SSH the commands take effect
+     * without Enter after "stty raw -echo".
+     * @param args The map file, and
+     *             optionally the screen
+     *             width and height.
+     */
+    public static void main(String[] args){
+        if(args.length < 1){
+            System.out.println("Usage: MaPsciiTerminal <mapFile> [width height]");
+            return;
+        }//end if
+
+        int w = 80;
+        int h = 24;
+        try{
+            if(args.length > 2){
+                w = Integer.parseInt(args[1]);
+                h = Integer.parseInt(args[2]);
+            }//end if
+        }//end try
+        catch(NumberFormatException nfe){
+            System.out.println(nfe.getMessage());
+            return;
+        }//end catch nfe
+
+        MaPsciiMap map = new MaPsciiMap();
+        if(!map.loadMap(new File(args[0])))
+            return;
+
+        MaPsciiGrid grid = map.getGrid();
+        map.setScale(1);
+        map.setMapCenter(new Point(grid.width() / 2, grid.height() / 2));
+
+        MaPsciiTerminal terminal = new MaPsciiTerminal(System.out);
+        MaPsciiRenderPipeline pipeline = new MaPsciiRenderPipeline(map, new AsciiScreen(w, h), terminal);
+        pipeline.render();
+
+        try(BufferedReader in = new BufferedReader(new InputStreamReader(System.in))){
+            int c;
+            while((c = in.read()) >= 0 && c != 'q'){
+                switch(c){
+                    case 'a': pipeline.pan(-1, 0); break;
+                    case 'd': pipeline.pan(1, 0); break;
+                    case 'w': pipeline.pan(0, -1); break;
+                    case 's': pipeline.pan(0, 1); break;
+                    case '+': pipeline.render(() -> map.setScale(map.getScale() + 1)); break;
+                    case '-': pipeline.render(() -> map.setScale(Math.max(1, map.getScale() - 1))); break;
+                    default: break;
+                }//end switch
+            }//end while
+        }//end try
+        catch(IOException ioe){
+            System.out.println(ioe.getMessage());
+        }//end catch ioe
+
+        //restore the terminal once the
+        //frames queued have been sent
+        pipeline.shutdown();
+        try{
+            pipeline.awaitTermination(1, TimeUnit.MINUTES);
+        }//end try
+        catch(InterruptedException ie){
+            Thread.currentThread().interrupt();
+        }//end catch ie
+        terminal.close(h);
+    }
+
+    /***
+     * Retrieves the number of bytes sent
+     * so far.
+     * @return Returns the byte count.
+     */
+    public long getBytesWritten(){
+        return bytesWritten;
+    }
+
+    /***
+     * Retrieves the number of bytes sent
+     * for the last frame.
+     * @return Returns the byte count.
+     */
+    public int getLastFrameBytes(){
+        return lastFrameBytes;
+    }
+
+    /***
+     * Forgets the frame last sent, so the
+     * next frame is sent whole.  Used when
+     * the terminal was cleared or written
+     * to by something else.
+     */
+    public void invalidate(){
+        sent = null;
+    }
+
+    /***
+     * Presents a screen, reporting a
+     * failure to write it.
+     * @param screen The screen.
+     */
+    @Override
+    public void accept(AsciiScreen screen){
+        try{
+            present(screen);
+        }//end try
+        catch(IOException ioe){
+            sent = null;
+            System.err.println(ioe.getMessage());
+        }//end catch ioe
+    }
+
+    /***
+     * Sends the parts of a screen which
+     * changed since the last frame.
+     * @param screen The screen.
+     * @throws IOException
+     */
+    public void present(AsciiScreen screen)
+            throws IOException{
+        int height = screen.getHeight();
+        int width = screen.getWidth();
+        len = 0;
+
+        if(sent == null || sent.length != height ||
+           (height > 0 && sent[0].length != width)){
+            //hide the cursor, clear and
+            //send every row
+            sent = new char[height][width];
+            putSequence("[?25l");
+            putSequence("[2J");
+            for(int i = 0; i < height; i++){
+                char[] row = screen.row(i);
+                putRun(row, i, 0, width);
+                System.arraycopy(row, 0, sent[i], 0, width);
+            }//end for i
+        }//end if
+        else{
+            for(int i = 0; i < height; i++){
+                diffRow(screen.row(i), sent[i], i);
+            }//end for i
+        }//end else
+
+        if(len > 0){
+            out.write(buf, 0, len);
+            out.flush();
+        }//end if
+
+        bytesWritten += len;
+        lastFrameBytes = len;
+    }
+
+    /***
+     * Puts the cursor below a frame of a
+     * given height and shows it again.
+     * @param height The height of the frame.
+     */
+    public void close(int height){
+        len = 0;
+        putMove(height, 0);
+        putSequence("[?25h");
+        put((byte) '\n');
+        try{
+            out.write(buf, 0, len);
+            out.flush();
+        }//end try
+        catch(IOException ioe){
+            System.err.println(ioe.getMessage());
+        }//end catch ioe
+
+        sent = null;
+    }
+
+    /***
+     * Encodes the runs of a row which
+     * changed and brings the copy sent up
+     * to date.
+     * @param row The new row.
+     * @param old The row last sent.
+     * @param line The line number of the row.
+     */
+    private void diffRow(char[] row, char[] old, int line){
+        int width = row.length;
+        int j = 0;
+        while(j < width){
+            if(row[j] == old[j]){
+                j++;
+                continue;
+            }//end if
+
+            //extend the run over changes
+            //and short unchanged gaps
+            int from = j;
+            int to = j + 1;
+            int k = to;
+            while(k < width && k - to <= MAX_GAP){
+                if(row[k] != old[k])
+                    to = k + 1;
+                k++;
+            }//end while
+
+            putRun(row, line, from, to);
+            System.arraycopy(row, from, old, from, to - from);
+            j = to;
+        }//end while
+    }
+
+    /***
+     * Encodes a cursor move followed by a
+     * run of characters.
+     * @param row The characters.
+     * @param line The line of the run.
+     * @param from The first column.
+     * @param to The column after the last.
+     */
+    private void putRun(char[] row, int line, int from, int to){
+        putMove(line, from);
+        ensure(to - from);
+        for(int i = from; i < to; i++){
+            char c = row[i];
+            buf[len++] = (c >= ' ' && c < 0x7f) ? (byte) c : UNPRINTABLE;
+        }//end for i
+    }
+
+    /***
+     * Encodes a cursor move.
+     * @param line The line, from zero.
+     * @param col The column, from zero.
+     */
+    private void putMove(int line, int col){
+        put(ESC);
+        put((byte) '[');
+        putInt(line + 1);
+        put((byte) ';');
+        putInt(col + 1);
+        put((byte) 'H');
+    }
+
+    /***
+     * Encodes a control sequence.
+     * @param seq The sequence after ESC.
+     */
+    private void putSequence(String seq){
+        put(ESC);
+        for(int i = 0; i < seq.length(); i++){
+            put((byte) seq.charAt(i));
+        }//end for i
+    }
+
+    /***
+     * Encodes a positive number in
+     * decimal.
+     * @param n The number.
+     */
+    private void putInt(int n){
+        if(n >= 10)
+            putInt(n / 10);
+        put((byte) ('0' + n % 10));
+    }
+
+    private void put(byte b){
+        ensure(1);
+        buf[len++] = b;
+    }
+
+    /***
+     * Grows the buffer to take a number
+     * of bytes more.
+     * @param n The number of bytes.
+     */
+    private void ensure(int n){
+        if(len + n > buf.length)
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + n));
+    }
+}
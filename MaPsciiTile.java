@@ -36,6 +36,17 @@ public abstract class MaPsciiTile
     protected static final char GUNDSCR = '_';
     protected static final char GSTAR = '*';
 
+    /***
+     * The metrics of each tile class,
+     * computed once per scale.
+     */
+    private static final ClassValue<MetricsSet> METRICS = new ClassValue<>(){
+        @Override
+        protected MetricsSet computeValue(Class<?> type){
+            return new MetricsSet();
+        }
+    };
+
     /***
      * Property: GUID
      * Unique identifier for the tile.
@@ -124,6 +135,21 @@ public abstract class MaPsciiTile
         this.y = y;
     }
 
+    /***
+     * Checks a render scale.  Scales
+     * start at one.
+     * @param scale The scale to check.
+     * @return Returns the scale.
+     * @throws IllegalArgumentException if
+     *         the scale is less than one.
+     */
+    public static int checkScale(int scale){
+        if(scale < 1)
+            throw new IllegalArgumentException("Bad scale " + scale + ", scales start at 1.");
+
+        return scale;
+    }
+
     /***
      * Calculate the width of the tile
      * rendered at a specified scale.
@@ -187,11 +213,37 @@ public abstract class MaPsciiTile
      */
     public Point calcBoxVector(int scale,
                                Point mapVector){
-        Direction xDir = (mapVector.x > 0) ? Direction.LEFT : Direction.RIGHT;
-        Direction yDir = (mapVector.y > 0) ? Direction.TOP : Direction.BOTTOM;
+        ScaleMetrics m = scaleMetrics(scale);
+        return new Point((mapVector.x > 0) ? m.getLeft() : m.getRight(),
+                         (mapVector.y > 0) ? m.getTop() : m.getBottom());
+    }
+
+    /***
+     * Calculates the x and y distances
+     * between the centers of neighbouring
+     * tiles.  Computed once a scale into
+     * the scale metrics, which calcVector
+     * may use, so it must not be derived
+     * from calcVector.
+     * @param scale The render scale to use.
+     * @return Returns a Point object with
+     *         the x and y distances.
+     */
+    protected abstract Point calcPitch(int scale);
 
-        return new Point(calcDirectionBox(scale, xDir),
-                         calcDirectionBox(scale, yDir));
+    /***
+     * Retrieves the metrics of the tile at
+     * a given scale.  The metrics are
+     * computed once per tile class and
+     * scale and shared by every tile of
+     * the class, so a tile's shape must
+     * depend only on its class and the
+     * scale.
+     * @param scale The render scale to use.
+     * @return Returns the metrics.
+     */
+    public final ScaleMetrics scaleMetrics(int scale){
+        return METRICS.get(getClass()).metrics(this, scale);
     }
 
     /***
@@ -231,6 +283,60 @@ public abstract class MaPsciiTile
                                          int line,
                                          RenderPass pass);
 
+    /***
+     * Determines the key under which the
+     * rendered lines of this tile are
+     * shared in the glyph cache.  Tiles
+     * of the same class render the same
+     * way, so by default the class is
+     * the key.  Tiles whose interior
+     * differs per instance can return
+     * their own key, or null to opt out
+     * of the cache altogether.
+     * @return Returns the glyph key, or
+     *         null if the tile is not
+     *         to be cached.
+     */
+    protected Object glyphKey(){
+        return getClass();
+    }
+
+    /***
+     * Signals that the appearance of
+     * the tile has changed, discarding
+     * the cached lines for its glyph key.
+     */
+    protected void appearanceChanged(){
+        MaPsciiGlyphCache.invalidate(glyphKey());
+    }
+
+    /***
+     * Retrieves a specified line of the
+     * tile as rendered characters, taken
+     * from the glyph cache when possible.
+     * @param scale The render scale to use.
+     * @param line The line number to be
+     *             rendered, measured from
+     *             the top and beginning
+     *             at zero.
+     * @param pass The render pass.
+     * @return Returns the rendered line of
+     *         ASCII graphic text.  The array
+     *         may be shared and must not
+     *         be modified.
+     */
+    public char[] glyphLine(int scale,
+                            int line,
+                            RenderPass pass){
+        Object key = glyphKey();
+        if(key == null || pass == null){
+            return renderLine(scale, line, pass).toCharArray();
+        }//end if
+        else{
+            return MaPsciiGlyphCache.lines(key, this, scale)[pass.ordinal()][line];
+        }//end else
+    }
+
     /***
      * Renders the interior of the tile
      * at a given scale and line as a
@@ -259,4 +365,150 @@ public abstract class MaPsciiTile
      *         a map.
      */
     protected abstract int calcRenderOffset(int scale, int line);
+
+    /***
+     * The shape of a tile class at one
+     * scale: its size, the distances from
+     * its center to each side of its
+     * bounding box, the pitch between
+     * neighbouring tiles and the render
+     * offset of each line.  Immutable.
+     */
+    public static final class ScaleMetrics
+    {
+        private final int scale;
+        private final int width;
+        private final int height;
+        private final int left;
+        private final int top;
+        private final int right;
+        private final int bottom;
+        private final int pitchX;
+        private final int pitchY;
+        private final int[] renderOffsets;
+
+        private ScaleMetrics(MaPsciiTile tile, int scale){
+            this.scale = scale;
+            width = tile.calcWidth(scale);
+            height = tile.calcHeight(scale);
+            left = tile.calcDirectionBox(scale, Direction.LEFT);
+            top = tile.calcDirectionBox(scale, Direction.TOP);
+            right = tile.calcDirectionBox(scale, Direction.RIGHT);
+            bottom = tile.calcDirectionBox(scale, Direction.BOTTOM);
+
+            Point pitch = tile.calcPitch(scale);
+            pitchX = pitch.x;
+            pitchY = pitch.y;
+
+            renderOffsets = new int[Math.max(0, height)];
+            for(int i = 0; i < renderOffsets.length; i++){
+                renderOffsets[i] = tile.calcRenderOffset(scale, i);
+            }//end for i
+        }
+
+        public int getScale(){
+            return scale;
+        }
+        public int getWidth(){
+            return width;
+        }
+        public int getHeight(){
+            return height;
+        }
+        public int getLeft(){
+            return left;
+        }
+        public int getTop(){
+            return top;
+        }
+        public int getRight(){
+            return right;
+        }
+        public int getBottom(){
+            return bottom;
+        }
+        public int getPitchX(){
+            return pitchX;
+        }
+        public int getPitchY(){
+            return pitchY;
+        }
+
+        /***
+         * Retrieves the distance from the
+         * center to the edge of the bounding
+         * box in a direction.
+         * @param dir The direction.
+         * @return Returns the distance in
+         *         characters.
+         */
+        public int getDirectionBox(Direction dir){
+            switch(dir){
+                case LEFT:
+                    return left;
+                case TOP:
+                    return top;
+                case RIGHT:
+                    return right;
+                case BOTTOM:
+                    return bottom;
+                default:
+                    return 0;
+            }//end switch
+        }
+
+        /***
+         * Retrieves the number of characters
+         * skipped before the tile begins on
+         * a line.
+         * @param line The line.
+         * @return Returns the render offset.
+         */
+        public int getRenderOffset(int line){
+            return renderOffsets[line];
+        }
+
+        @Override
+        public String toString(){
+            return "ScaleMetrics[scale " + scale + " " + width + "x" + height +
+                   " box " + left + "," + top + "," + right + "," + bottom +
+                   " pitch " + pitchX + "," + pitchY + "]";
+        }
+    }
+
+    /***
+     * Private class holding the metrics of
+     * one tile class, indexed by scale.
+     * Each scale is computed once and
+     * published with a copy of the scale
+     * array so readers never need to lock.
+     */
+    private static class MetricsSet
+    {
+        private volatile ScaleMetrics[] byScale = new ScaleMetrics[0];
+
+        ScaleMetrics metrics(MaPsciiTile tile, int scale){
+            ScaleMetrics[] cur = byScale;
+            if(scale >= 0 && scale < cur.length && cur[scale] != null)
+                return cur[scale];
+
+            //negative scales are not cached
+            if(scale < 0)
+                return new ScaleMetrics(tile, scale);
+
+            synchronized(this){
+                cur = byScale;
+                if(scale < cur.length && cur[scale] != null)
+                    return cur[scale];
+
+                ScaleMetrics m = new ScaleMetrics(tile, scale);
+                ScaleMetrics[] next = new ScaleMetrics[Math.max(cur.length, scale + 1)];
+                System.arraycopy(cur, 0, next, 0, cur.length);
+                next[scale] = m;
+                byScale = next;
+
+                return m;
+            }//end synchronized
+        }
+    }
 }
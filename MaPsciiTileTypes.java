@@ -0,0 +1,255 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.UUID;
+
+/***
+ * Registry of the tile classes held by
+ * a grid which stores its tiles in
+ * primitive arrays.  Each class is given
+ * a small type id, and one flyweight
+ * tile is kept per class and render
+ * pass for rendering.  The registry
+ * also packs tile GUIDs into longs.
+ */
+public class MaPsciiTileTypes
+{
+    //type id stored for an empty position
+    public static final byte NO_TILE = 0;
+    //pass code stored for a tile without a render pass
+    public static final byte NO_PASS = 0;
+    //most tile types one registry can hold
+    public static final int MAX_TYPES = 255;
+
+    private static final MaPsciiTile.RenderPass[] PASSES = MaPsciiTile.RenderPass.values();
+
+    //values of the upper case hex digits, -1 for other characters
+    private static final byte[] HEX = new byte['F' + 1];
+    static{
+        Arrays.fill(HEX, (byte) -1);
+        for(int d = 0; d < 16; d++){
+            HEX["0123456789ABCDEF".charAt(d)] = (byte) d;
+        }//end for d
+    }
+
+    /***
+     * The tile classes in the registry,
+     * type id n being the class at n - 1,
+     * and the flyweights for each class
+     * indexed by render pass code.
+     */
+    private ArrayList<Class<? extends MaPsciiTile>> typeClasses = new ArrayList<>();
+    private ArrayList<MaPsciiTile[]> flyweights = new ArrayList<>();
+
+    /***
+     * Copies of the registered classes and
+     * their flyweights, replaced whenever
+     * a class is added, so lookups need
+     * not lock and grids sharing the
+     * registry can be read while another
+     * thread registers a class.
+     */
+    private volatile Class<?>[] known = new Class<?>[0];
+    private volatile MaPsciiTile[][] knownFlyweights = new MaPsciiTile[0][];
+
+    /***
+     * Constructor.
+     */
+    public MaPsciiTileTypes(){}
+
+    /***
+     * Retrieves the number of tile
+     * classes in the registry.
+     * @return Returns the count of classes.
+     */
+    public int size(){
+        return known.length;
+    }
+
+    /***
+     * Retrieves the class for a type id.
+     * @param type The type id.
+     * @return Returns the tile class, or
+     *         null for NO_TILE or an
+     *         unknown id.
+     */
+    @SuppressWarnings("unchecked")
+    public Class<? extends MaPsciiTile> tileClass(int type){
+        Class<?>[] cur = known;
+        if(type <= NO_TILE || type > cur.length)
+            return null;
+        else
+            return (Class<? extends MaPsciiTile>) cur[type - 1];
+    }
+
+    /***
+     * Looks up the type id of a tile
+     * class, registering the class and
+     * creating its flyweights if it has
+     * not been seen before.
+     * @param tileClass The tile class.
+     * @return Returns the type id.
+     */
+    public byte typeId(Class<? extends MaPsciiTile> tileClass){
+        Class<?>[] cur = known;
+        for(int i = 0; i < cur.length; i++){
+            if(cur[i] == tileClass)
+                return (byte) (i + 1);
+        }//end for i
+
+        return register(tileClass);
+    }
+
+    /***
+     * Registers a tile class if it has
+     * not been registered already.
+     * @param tileClass The tile class.
+     * @return Returns the type id.
+     */
+    private synchronized byte register(Class<? extends MaPsciiTile> tileClass){
+        int idx = typeClasses.indexOf(tileClass);
+        if(idx < 0){
+            if(typeClasses.size() == MAX_TYPES)
+                throw new IllegalStateException("A grid can hold at most " + MAX_TYPES + " tile classes.");
+
+            MaPsciiTile[] fw = new MaPsciiTile[PASSES.length + 1];
+            for(int p = 0; p < fw.length; p++){
+                fw[p] = MaPsciiGrid.createTile(tileClass, 0, 0);
+                if(fw[p] != null && p != NO_PASS)
+                    fw[p].setRenderPass(PASSES[p - 1]);
+            }//end for p
+
+            flyweights.add(fw);
+            typeClasses.add(tileClass);
+            knownFlyweights = flyweights.toArray(new MaPsciiTile[0][]);
+            known = typeClasses.toArray(new Class<?>[0]);
+            idx = typeClasses.size() - 1;
+        }//end if
+
+        return (byte) (idx + 1);
+    }
+
+    /***
+     * Retrieves the shared flyweight
+     * tile for a type and pass.
+     * @param type The type id.
+     * @param pass The render pass code.
+     * @return Returns the flyweight, or
+     *         null for an empty position.
+     */
+    public MaPsciiTile flyweight(int type, int pass){
+        if(type == NO_TILE)
+            return null;
+        else
+            return knownFlyweights[type - 1][pass];
+    }
+
+    /***
+     * Builds a new tile object.
+     * @param type The type id.
+     * @param pass The render pass code.
+     * @param x X value for the tile.
+     * @param y Y value for the tile.
+     * @param guid GUID for the tile.
+     * @return Returns a new tile, or null
+     *         for an empty position.
+     */
+    public MaPsciiTile materialize(int type, int pass, int x, int y, String guid){
+        if(type == NO_TILE)
+            return null;
+
+        MaPsciiTile tile = MaPsciiGrid.createTile(tileClass(type), x, y);
+        if(tile != null){
+            tile.setRenderPass(renderPass(pass));
+            tile.setGuid(guid);
+        }//end if
+
+        return tile;
+    }
+
+    /***
+     * Converts a render pass to the code
+     * stored for it.
+     * @param pass The render pass, may
+     *             be null.
+     * @return Returns the pass code.
+     */
+    public static byte passCode(MaPsciiTile.RenderPass pass){
+        return (pass == null) ? NO_PASS : (byte) (pass.ordinal() + 1);
+    }
+
+    /***
+     * Converts a stored pass code back
+     * to a render pass.
+     * @param code The pass code.
+     * @return Returns the render pass,
+     *         or null for NO_PASS.
+     */
+    public static MaPsciiTile.RenderPass renderPass(int code){
+        return (code == NO_PASS) ? null : PASSES[code - 1];
+    }
+
+    /***
+     * Parses a GUID in the packed form
+     * {XXXXXXXX-XXXX-XXXX-XXXX-XXXXXXXXXXXX}.
+     * The digits are read in place so
+     * that bulk loads do not build any
+     * strings per tile.
+     * @param guid The GUID, may be null.
+     * @return Returns the GUID as a UUID,
+     *         or null if the GUID does
+     *         not round trip exactly
+     *         through the packed form.
+     */
+    public static UUID packGuid(String guid){
+        if(guid == null || guid.length() != 38 ||
+           guid.charAt(0) != '{' || guid.charAt(37) != '}')
+            return null;
+
+        long hi = 0;
+        long lo = 0;
+        int digits = 0;
+        for(int i = 1; i < 37; i++){
+            char c = guid.charAt(i);
+            if(i == 9 || i == 14 || i == 19 || i == 24){
+                if(c != '-')
+                    return null;
+                continue;
+            }//end if
+
+            //only upper case digits round
+            //trip through formatGuid
+            int d = (c < HEX.length) ? HEX[c] : -1;
+            if(d < 0)
+                return null;
+
+            if(digits < 16)
+                hi = (hi << 4) | d;
+            else
+                lo = (lo << 4) | d;
+            digits++;
+        }//end for i
+
+        //an all zero GUID is kept for
+        //marking tiles with no GUID
+        if(hi == 0 && lo == 0)
+            return null;
+
+        return new UUID(hi, lo);
+    }
+
+    /***
+     * Formats a packed GUID.
+     * @param hi The high 64 bits.
+     * @param lo The low 64 bits.
+     * @return Returns the GUID in the
+     *         {XXXXXXXX-XXXX-XXXX-XXXX-XXXXXXXXXXXX}
+     *         form, or null if both
+     *         halves are zero.
+     */
+    public static String formatGuid(long hi, long lo){
+        if(hi == 0 && lo == 0)
+            return null;
+        else
+            return "{" + new UUID(hi, lo).toString().toUpperCase() + "}";
+    }
+}
@@ -0,0 +1,170 @@
+import java.awt.*;
+
+/***
+ * Immutable description of one view of
+ * a map: the center tile, the scale and
+ * the size of the screen in characters.
+ * A render given a viewport keeps all of
+ * its working state to itself, so any
+ * number of viewports of one map can be
+ * rendered at the same time.
+ */
+public final class MaPsciiViewport
+{
+    /***
+     * Property: CenterX
+     * The x of the center tile (in map
+     * coordinates).
+     */
+    private final int centerX;
+    public int getCenterX(){
+        return centerX;
+    }
+
+    /***
+     * Property: CenterY
+     * The y of the center tile (in map
+     * coordinates).
+     */
+    private final int centerY;
+    public int getCenterY(){
+        return centerY;
+    }
+
+    /***
+     * Property: Scale
+     * The scale to render at.
+     */
+    private final int scale;
+    public int getScale(){
+        return scale;
+    }
+
+    /***
+     * Property: Width
+     * The width of the screen in
+     * characters.
+     */
+    private final int width;
+    public int getWidth(){
+        return width;
+    }
+
+    /***
+     * Property: Height
+     * The height of the screen in
+     * characters.
+     */
+    private final int height;
+    public int getHeight(){
+        return height;
+    }
+
+    /***
+     * Constructor.
+     * @param center The center tile.
+     * @param scale The scale.
+     * @param width The screen width.
+     * @param height The screen height.
+     */
+    public MaPsciiViewport(Point center, int scale, int width, int height){
+        this(center.x, center.y, scale, width, height);
+    }
+
+    /***
+     * Constructor.
+     * @param centerX The x of the center tile.
+     * @param centerY The y of the center tile.
+     * @param scale The scale, from one.
+     * @param width The screen width.
+     * @param height The screen height.
+     * @throws IllegalArgumentException if
+     *         the scale is less than one.
+     */
+    public MaPsciiViewport(int centerX, int centerY, int scale, int width, int height){
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.scale = MaPsciiTile.checkScale(scale);
+        this.width = width;
+        this.height = height;
+    }
+
+    /***
+     * Constructor.  The viewport takes
+     * the current size of a screen.
+     * @param center The center tile.
+     * @param scale The scale.
+     * @param screen The screen.
+     */
+    public MaPsciiViewport(Point center, int scale, AsciiScreen screen){
+        this(center.x, center.y, scale, screen.getWidth(), screen.getHeight());
+    }
+
+    /***
+     * Retrieves the center tile.
+     * @return Returns a new Point holding
+     *         the center.
+     */
+    public Point getCenter(){
+        return new Point(centerX, centerY);
+    }
+
+    /***
+     * Creates the viewport moved by a
+     * number of tiles.
+     * @param x The x distance in tiles.
+     * @param y The y distance in tiles.
+     * @return Returns the new viewport.
+     */
+    public MaPsciiViewport pannedBy(int x, int y){
+        return new MaPsciiViewport(centerX + x, centerY + y, scale, width, height);
+    }
+
+    /***
+     * Creates the viewport at another scale.
+     * @param value The scale.
+     * @return Returns the new viewport.
+     */
+    public MaPsciiViewport withScale(int value){
+        return new MaPsciiViewport(centerX, centerY, value, width, height);
+    }
+
+    /***
+     * Creates the viewport for another
+     * screen size.
+     * @param w The screen width.
+     * @param h The screen height.
+     * @return Returns the new viewport.
+     */
+    public MaPsciiViewport withSize(int w, int h){
+        return new MaPsciiViewport(centerX, centerY, scale, w, h);
+    }
+
+    @Override
+    public boolean equals(Object o){
+        if(!(o instanceof MaPsciiViewport))
+            return false;
+
+        MaPsciiViewport v = (MaPsciiViewport) o;
+        return centerX == v.centerX &&
+               centerY == v.centerY &&
+               scale == v.scale &&
+               width == v.width &&
+               height == v.height;
+    }
+
+    @Override
+    public int hashCode(){
+        int h = centerX;
+        h = h * 31 + centerY;
+        h = h * 31 + scale;
+        h = h * 31 + width;
+        return h * 31 + height;
+    }
+
+    @Override
+    public String toString(){
+        return "MaPsciiViewport[" + centerX + "," + centerY +
+               " scale " + scale + " " + width + "x" + height + "]";
+    }
+}